@@ -0,0 +1,40 @@
+package montecarlo1;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/*
+ * Entry point of the benchmark jar.
+ *
+ * It takes the same arguments as JMH's own launcher, but writes the
+ * results as JSON to results/jmh-<timestamp>.json by default, so
+ * that runs can be compared over time.
+ */
+public class BenchmarkRunner {
+        // Directory where the results are written by default.
+        private static final String RESULTS_DIR = "results";
+
+        public static void main(String[] args) throws Exception
+        {
+                List<String> argList = new ArrayList<>(Arrays.asList(args));
+
+                if (!argList.contains("-rf")) {
+                        argList.add("-rf");
+                        argList.add("json");
+                }
+                if (!argList.contains("-rff")) {
+                        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss")
+                                .format(new Date());
+                        new File(RESULTS_DIR).mkdirs();
+                        argList.add("-rff");
+                        argList.add(RESULTS_DIR + "/jmh-" + stamp + ".json");
+                }
+                Main.main(argList.toArray(new String[0]));
+        }
+}
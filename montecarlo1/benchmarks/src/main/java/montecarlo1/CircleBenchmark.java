@@ -0,0 +1,54 @@
+package montecarlo1;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Cost of the elementary operations of a cycle: drawing a random
+ * point and testing it against a circle.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CircleBenchmark {
+        private Circle circle;
+        private Point point;
+
+        @Setup
+        public void setup()
+        {
+                circle = new Circle(1, 1, 1);
+                point = Point.random(0, 2, 0, 2);
+        }
+
+        @Benchmark
+        public boolean containsPoint()
+        {
+                return circle.contains(point);
+        }
+
+        @Benchmark
+        public boolean containsCoordinates()
+        {
+                return circle.contains(point.x(), point.y());
+        }
+
+        @Benchmark
+        public Point randomPoint()
+        {
+                return Point.random(0, 2, 0, 2);
+        }
+}
@@ -0,0 +1,72 @@
+package montecarlo1;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Time of the exact area of the circles, against a parallel
+ * simulation that runs until its estimate reaches a given absolute
+ * precision, for several numbers of circles.
+ *
+ * The exact computation grows with the square of the number of
+ * circles that overlap, and the simulation with the inverse square
+ * of the precision, so for each precision there is a number of
+ * circles past which the simulation is faster.  The time of the
+ * exact computation doesn't depend on "error".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExactBenchmark {
+        // Confidence level of the target precision.
+        private static final double CONFIDENCE = 0.95;
+
+        @Param({ "10", "100", "1000", "10000", "100000" })
+        public int circles;
+
+        @Param({ "1e-2", "1e-3", "1e-4" })
+        public double error;
+
+        private Circle c[];
+
+        @Setup
+        public void setup()
+        {
+                c = Experiment.randCircles(circles, 1, 1, 1);
+        }
+
+        @Benchmark
+        public double exact()
+        {
+                Simulator sim = new ExactSimulator(
+                        c, 1, new SimulationOptions());
+                sim.run();
+                return sim.currentEstim();
+        }
+
+        @Benchmark
+        public double parallel()
+        {
+                Simulator sim = new ParallelSimulator(
+                        c, Long.MAX_VALUE, 1,
+                        new SimulationOptions()
+                        .retention(SampleRetention.NONE)
+                        .precision(Precision.absolute(error, CONFIDENCE)));
+                sim.run();
+                return sim.currentEstim();
+        }
+}
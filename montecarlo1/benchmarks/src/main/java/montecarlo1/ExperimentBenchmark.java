@@ -0,0 +1,61 @@
+package montecarlo1;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Throughput of Experiment.run, in cycles per second, for an
+ * increasing number of random circles and each containment kernel.
+ *
+ * The experiment keeps no point, so this measures the generation and
+ * test of the points alone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class ExperimentBenchmark {
+        // Number of cycles run by each invocation.
+        private static final int CYCLES = 1 << 16;
+
+        @Param({ "1", "10", "100", "1000", "10000", "100000", "1000000" })
+        public int circles;
+
+        @Param({ "GRID", "VECTOR" })
+        public Containment containment;
+
+        private Experiment exp;
+
+        @Setup
+        public void setup()
+        {
+                exp = new Experiment(
+                        Experiment.randCircles(circles, 1, 1),
+                        Long.MAX_VALUE, 0, 1, 1,
+                        new SimulationOptions()
+                        .retention(SampleRetention.NONE)
+                        .containment(containment));
+        }
+
+        @Benchmark
+        @OperationsPerInvocation(CYCLES)
+        public long run()
+        {
+                exp.run(CYCLES);
+                return exp.numInside();
+        }
+}
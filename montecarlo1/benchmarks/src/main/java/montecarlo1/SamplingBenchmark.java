@@ -0,0 +1,54 @@
+package montecarlo1;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Cost of drawing a point from each kind of sample source.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SamplingBenchmark {
+        // Number of points drawn per invocation, the size of the
+        // blocks of an experiment.
+        private static final int POINTS = 256;
+
+        @Param({ "RANDOM", "HALTON", "SOBOL" })
+        public Sampling sampling;
+
+        private SampleSource source;
+        private float u[];
+        private float v[];
+
+        @Setup
+        public void setup()
+        {
+                source = sampling.newSource(42);
+                u = new float[POINTS];
+                v = new float[POINTS];
+        }
+
+        @Benchmark
+        @OperationsPerInvocation(POINTS)
+        public float next()
+        {
+                source.next(u, v, POINTS);
+                return u[0] + v[POINTS - 1];
+        }
+}
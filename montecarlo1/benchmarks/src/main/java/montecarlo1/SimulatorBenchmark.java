@@ -0,0 +1,102 @@
+package montecarlo1;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Time of a whole simulation, sequential or parallel, for several
+ * thread counts and both schedulings of the parallel simulator.
+ *
+ * With "layout" set to "skewed", all the circles are packed in the
+ * leftmost stripe of the field.  With Scheduling.STRIPES, the thread
+ * of that stripe then does most of the work while the others wait.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulatorBenchmark {
+        private static final long CYCLES = 10_000_000;
+        private static final int CIRCLES = 100_000;
+
+        @Param({ "1", "2", "4", "8" })
+        public int threads;
+
+        @Param({ "uniform", "skewed" })
+        public String layout;
+
+        private Circle circles[];
+
+        @Setup
+        public void setup()
+        {
+                circles = layout.equals("skewed") ?
+                        skewedCircles(CIRCLES, threads, 1) :
+                        Experiment.randCircles(CIRCLES, 1, 1);
+        }
+
+        // Return "num" circles whose centers all lie in the leftmost
+        // "1/stripes" of a square field of the given size.
+        static Circle[] skewedCircles(int num, int stripes, float size)
+        {
+                Circle c[] = new Circle[num];
+                float width = size / stripes;
+                float max = (float)Math.sqrt(width*size / (Math.PI*num));
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+                for (int i = 0; i < num; i++)
+                        c[i] = new Circle(width * rnd.nextFloat(),
+                                          size * rnd.nextFloat(),
+                                          max * rnd.nextFloat());
+                return c;
+        }
+
+        private SimulationOptions options(Scheduling scheduling)
+        {
+                return new SimulationOptions()
+                        .retention(SampleRetention.NONE)
+                        .scheduling(scheduling)
+                        .threads(threads);
+        }
+
+        @Benchmark
+        public double sequential()
+        {
+                Simulator sim = new SequentialSimulator(
+                        circles, CYCLES, 1, options(Scheduling.BATCHES));
+                sim.run();
+                return sim.currentEstim();
+        }
+
+        @Benchmark
+        public double parallelStripes()
+        {
+                Simulator sim = new ParallelSimulator(
+                        circles, CYCLES, 1, options(Scheduling.STRIPES));
+                sim.run();
+                return sim.currentEstim();
+        }
+
+        @Benchmark
+        public double parallelBatches()
+        {
+                Simulator sim = new ParallelSimulator(
+                        circles, CYCLES, 1, options(Scheduling.BATCHES));
+                sim.run();
+                return sim.currentEstim();
+        }
+}
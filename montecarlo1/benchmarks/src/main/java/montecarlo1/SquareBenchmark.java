@@ -0,0 +1,55 @@
+package montecarlo1;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Throughput of Square.updateImage, in points drawn per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class SquareBenchmark {
+        private static final int POINTS = 1 << 20;
+        private static final int PIXELS = 600;
+
+        private Simulator sim;
+        private Square square;
+
+        @Setup
+        public void setup()
+        {
+                sim = new SequentialSimulator(10, POINTS, 1);
+                sim.run();
+                square = new Square(PIXELS);
+                square.setup(sim);
+        }
+
+        @TearDown
+        public void teardown()
+        {
+                square.teardown();
+        }
+
+        @Benchmark
+        @OperationsPerInvocation(POINTS)
+        public void updateImage()
+        {
+                square.updateImage(sim, sim.iterator());
+        }
+}
@@ -0,0 +1,116 @@
+package montecarlo1;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/*
+ * Estimates the number of bytes allocated on the heap by all the
+ * threads of the JVM.
+ *
+ * The JVM only counts the allocations of each thread, and forgets
+ * about the threads once they are gone, like the ones of the pool of
+ * a parallel simulation.  We instead add the bytes each garbage
+ * collection frees to the growth of the heap, which gives the same
+ * total as long as the heap doesn't shrink for another reason.
+ */
+class AllocationMeter implements NotificationListener, AutoCloseable {
+        // Longest time we wait for the notifications of the garbage
+        // collections that already happened.
+        private static final long NOTIFICATION_TIMEOUT_MS = 1000;
+
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+        // Bytes freed by the garbage collections notified so far.
+        private final AtomicLong freed = new AtomicLong();
+
+        // Number of garbage collections notified so far.
+        private final AtomicLong notified = new AtomicLong();
+
+        // Number of garbage collections before we started listening.
+        private final long initialCollections;
+
+        public AllocationMeter()
+        {
+                for (GarbageCollectorMXBean gc :
+                             ManagementFactory.getGarbageCollectorMXBeans())
+                        if (gc instanceof NotificationEmitter) {
+                                NotificationEmitter e = (NotificationEmitter)gc;
+                                e.addNotificationListener(this, null, null);
+                                emitters.add(e);
+                        }
+                this.initialCollections = collections();
+        }
+
+        @Override
+        public void handleNotification(Notification n, Object handback)
+        {
+                if (!n.getType().equals(GarbageCollectionNotificationInfo
+                                        .GARBAGE_COLLECTION_NOTIFICATION))
+                        return;
+
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from(
+                                (CompositeData)n.getUserData());
+                long before = 0;
+                long after = 0;
+                for (MemoryUsage u : info.getGcInfo().getMemoryUsageBeforeGc().values())
+                        before += u.getUsed();
+                for (MemoryUsage u : info.getGcInfo().getMemoryUsageAfterGc().values())
+                        after += u.getUsed();
+                freed.addAndGet(before - after);
+                notified.incrementAndGet();
+        }
+
+        // Return the number of bytes allocated since an arbitrary
+        // origin.  The difference between two calls is the number of
+        // bytes allocated in between.
+        public long allocated()
+        {
+                // The notifications come from another thread, so we
+                // wait until we got the ones of all the collections
+                // that happened, or we would miss what they freed.
+                long deadline = System.currentTimeMillis() +
+                        NOTIFICATION_TIMEOUT_MS;
+                while (notified.get() < collections() - initialCollections &&
+                       System.currentTimeMillis() < deadline)
+                        Thread.onSpinWait();
+
+                return ManagementFactory.getMemoryMXBean()
+                        .getHeapMemoryUsage().getUsed() + freed.get();
+        }
+
+        // Return the number of garbage collections since the start
+        // of the JVM.
+        private static long collections()
+        {
+                long n = 0;
+
+                for (GarbageCollectorMXBean gc :
+                             ManagementFactory.getGarbageCollectorMXBeans())
+                        n += Math.max(0, gc.getCollectionCount());
+                return n;
+        }
+
+        @Override
+        public void close()
+        {
+                for (NotificationEmitter e : emitters)
+                        try {
+                                e.removeNotificationListener(this);
+                        } catch (ListenerNotFoundException ex) {
+                                // Already removed.
+                        }
+        }
+}
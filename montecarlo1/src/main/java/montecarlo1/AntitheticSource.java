@@ -0,0 +1,82 @@
+package montecarlo1;
+
+/*
+ * Makes antithetic pairs out of the points of another source: the
+ * points at indices 2k and 2k+1 are the k-th point (u, v) of the
+ * other source and its mirror image (1 - u, 1 - v) through the
+ * center of the square.
+ *
+ * When a point falls inside the circles, its mirror image is less
+ * likely to than a random point, so the two are negatively
+ * correlated, and the mean of a pair varies less than that of two
+ * independent points.  Estimator measures how much less.
+ */
+public class AntitheticSource implements SampleSource {
+        // The largest float below 1.  Mirroring u to ONE - u keeps
+        // the points in [0, 1).
+        private static final float ONE = 0x1.fffffep-1f;
+
+        private final SampleSource base;
+
+        // Buffers for the points of the other source.
+        private final float baseU[];
+        private final float baseV[];
+
+        // Index of the next point.
+        private long index;
+
+        // The point of the other source the next point mirrors, if
+        // "index" is odd.
+        private float lastU;
+        private float lastV;
+
+        public AntitheticSource(SampleSource base)
+        {
+                this.base = base;
+                this.baseU = new float[128];
+                this.baseV = new float[128];
+        }
+
+        @Override
+        public void next(float u[], float v[], int n)
+        {
+                int i = 0;
+
+                if ((index & 1) != 0 && n > 0) {
+                        u[i] = ONE - lastU;
+                        v[i] = ONE - lastV;
+                        i++;
+                }
+                while (i < n) {
+                        int m = Math.min(baseU.length, (n - i + 1) / 2);
+
+                        base.next(baseU, baseV, m);
+                        for (int j = 0; j < m; j++) {
+                                u[i] = baseU[j];
+                                v[i] = baseV[j];
+                                i++;
+                                if (i < n) {
+                                        u[i] = ONE - baseU[j];
+                                        v[i] = ONE - baseV[j];
+                                        i++;
+                                } else {
+                                        lastU = baseU[j];
+                                        lastV = baseV[j];
+                                }
+                        }
+                }
+                index += n;
+        }
+
+        @Override
+        public void seek(long index)
+        {
+                this.index = index;
+                base.seek(index / 2);
+                if ((index & 1) != 0) {
+                        base.next(baseU, baseV, 1);
+                        lastU = baseU[0];
+                        lastV = baseV[0];
+                }
+        }
+}
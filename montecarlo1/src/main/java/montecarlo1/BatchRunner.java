@@ -0,0 +1,396 @@
+package montecarlo1;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/*
+ * Runs simulations without any window, over every combination of the
+ * given modes, numbers of cycles, numbers of circles, field sizes and
+ * numbers of threads, and writes one CSV line or JSON object per
+ * measured run:
+ *
+ *      java -cp montecarlo1.jar montecarlo1.BatchRunner \
+ *              --mode sequential,parallel,exact --cycles 10000000 \
+ *              --circles 1,100,10000 --threads 1,2,4 --format json
+ *
+ * Each combination runs a few times for warmup before its measured
+ * repeats.  All the runs of a combination share the same circles.
+ */
+public class BatchRunner {
+        private static final String USAGE =
+                "Usage: BatchRunner [option...]\n" +
+                "Lists are comma separated, and the runs cover all their combinations.\n" +
+                "  --mode LIST          sequential, parallel or exact (default\n" +
+                "                       sequential)\n" +
+                "  --cycles LIST        number of cycles (default 1000000)\n" +
+                "  --circles LIST       number of circles (default 10)\n" +
+                "  --size LIST          side of the square field (default 1)\n" +
+                "  --threads LIST       threads of parallel runs (default: cores)\n" +
+                "  --layout NAME        random, or lattice for disjoint circles\n" +
+                "                       (default random)\n" +
+                "  --sampling NAME      random, halton or sobol (default random)\n" +
+                "  --strata N           number of strata, 0 for none (default 0)\n" +
+                "  --reduction NAME     variance reduction: none, control, antithetic\n" +
+                "                       or both (default none)\n" +
+                "  --containment NAME   grid or vector (default grid); vector needs\n" +
+                "                       --add-modules jdk.incubator.vector\n" +
+                "  --retention NAME     all, off_heap, reservoir or none (default none)\n" +
+                "  --seed N             seed of the circles and points (default: random)\n" +
+                "  --warmup N           unmeasured runs per combination (default 1)\n" +
+                "  --repeats N          measured runs per combination (default 5)\n" +
+                "  --format NAME        csv or json (default csv)\n" +
+                "  --output FILE        where to write the results (default: stdout)\n";
+
+        private static final String COLUMNS[] = {
+                "mode", "cycles", "circles", "size", "threads", "layout",
+                "sampling", "strata", "reduction", "repeat", "estimate",
+                "exact", "error", "half_width", "wall_ms", "samples_per_sec",
+                "alloc_bytes", "alloc_bytes_per_sec"
+        };
+
+        private List<String> modes = List.of("sequential");
+        private List<Long> cycles = List.of(1000000L);
+        private List<Integer> circles = List.of(10);
+        private List<Float> sizes = List.of(1f);
+        private List<Integer> threads =
+                List.of(Runtime.getRuntime().availableProcessors());
+        private String layout = "random";
+        private Sampling sampling = Sampling.RANDOM;
+        private int strata = 0;
+        private String reduction = "none";
+        private Containment containment = Containment.GRID;
+        private SampleRetention retention = SampleRetention.NONE;
+        private Long seed = null;
+        private int warmup = 1;
+        private int repeats = 5;
+        private boolean json = false;
+        private PrintStream out = System.out;
+
+        // Number of results written so far.
+        private int written = 0;
+
+        public static void main(String[] args)
+        {
+                BatchRunner runner = new BatchRunner();
+
+                try {
+                        runner.parse(args);
+                } catch (IllegalArgumentException e) {
+                        System.err.println(e.getMessage());
+                        System.err.print(USAGE);
+                        System.exit(2);
+                }
+                runner.runAll();
+        }
+
+        private void parse(String[] args)
+        {
+                for (int i = 0; i < args.length; i++) {
+                        String opt = args[i];
+
+                        if (opt.equals("--help") || opt.equals("-h")) {
+                                System.out.print(USAGE);
+                                System.exit(0);
+                        }
+                        if (i + 1 == args.length)
+                                throw new IllegalArgumentException(
+                                        "Missing value for " + opt);
+                        String val = args[++i];
+
+                        try {
+                                parseOption(opt, val);
+                        } catch (NumberFormatException e) {
+                                throw new IllegalArgumentException(
+                                        "Invalid value for " + opt + ": " + val);
+                        }
+                }
+        }
+
+        private void parseOption(String opt, String val)
+        {
+                switch (opt) {
+                case "--mode":
+                        modes = new ArrayList<>();
+                        for (String m : val.split(",")) {
+                                if (!m.equals("sequential") && !m.equals("parallel") &&
+                                    !m.equals("exact"))
+                                        throw new IllegalArgumentException(
+                                                "Unknown mode: " + m);
+                                modes.add(m);
+                        }
+                        break;
+                case "--cycles":
+                        cycles = new ArrayList<>();
+                        for (String s : val.split(","))
+                                cycles.add(positive(Long.parseLong(s)));
+                        break;
+                case "--circles":
+                        circles = new ArrayList<>();
+                        for (String s : val.split(","))
+                                circles.add((int)positive(Integer.parseInt(s)));
+                        break;
+                case "--size":
+                        sizes = new ArrayList<>();
+                        for (String s : val.split(",")) {
+                                float f = Float.parseFloat(s);
+                                if (!(f > 0))
+                                        throw new NumberFormatException();
+                                sizes.add(f);
+                        }
+                        break;
+                case "--threads":
+                        threads = new ArrayList<>();
+                        for (String s : val.split(","))
+                                threads.add((int)positive(Integer.parseInt(s)));
+                        break;
+                case "--layout":
+                        if (!val.equals("random") && !val.equals("lattice"))
+                                throw new IllegalArgumentException(
+                                        "Unknown layout: " + val);
+                        layout = val;
+                        break;
+                case "--sampling":
+                        sampling = parseEnum(Sampling.class, val, opt);
+                        break;
+                case "--strata":
+                        strata = Integer.parseInt(val);
+                        if (strata < 0)
+                                throw new NumberFormatException();
+                        break;
+                case "--reduction":
+                        if (!List.of("none", "control", "antithetic", "both")
+                            .contains(val))
+                                throw new IllegalArgumentException(
+                                        "Unknown reduction: " + val);
+                        reduction = val;
+                        break;
+                case "--containment":
+                        containment = parseEnum(Containment.class, val, opt);
+                        break;
+                case "--retention":
+                        retention = parseEnum(SampleRetention.class, val, opt);
+                        break;
+                case "--seed":
+                        seed = Long.parseLong(val);
+                        break;
+                case "--warmup":
+                        warmup = Integer.parseInt(val);
+                        if (warmup < 0)
+                                throw new NumberFormatException();
+                        break;
+                case "--repeats":
+                        repeats = (int)positive(Integer.parseInt(val));
+                        break;
+                case "--format":
+                        if (!val.equals("csv") && !val.equals("json"))
+                                throw new IllegalArgumentException(
+                                        "Unknown format: " + val);
+                        json = val.equals("json");
+                        break;
+                case "--output":
+                        try {
+                                out = new PrintStream(val);
+                        } catch (FileNotFoundException e) {
+                                throw new IllegalArgumentException(
+                                        "Cannot write to " + val);
+                        }
+                        break;
+                default:
+                        throw new IllegalArgumentException(
+                                "Unknown option: " + opt);
+                }
+        }
+
+        private static long positive(long n)
+        {
+                if (n < 1)
+                        throw new NumberFormatException();
+                return n;
+        }
+
+        // Return the enum constant whose name, in any case, is "val".
+        private static <E extends Enum<E>> E parseEnum(Class<E> type,
+                                                      String val,
+                                                      String opt)
+        {
+                try {
+                        return Enum.valueOf(type, val.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(
+                                "Invalid value for " + opt + ": " + val);
+                }
+        }
+
+        private void runAll()
+        {
+                SplittableRandom seeds = new SplittableRandom(
+                        seed != null ? seed : new SplittableRandom().nextLong());
+
+                if (json)
+                        out.println("[");
+                else
+                        out.println(String.join(",", COLUMNS));
+
+                try (AllocationMeter meter = new AllocationMeter()) {
+                        for (String mode : modes)
+                        for (long numCycles : cycles)
+                        for (int numCircles : circles)
+                        for (float size : sizes)
+                        for (int numThreads : threads) {
+                                // Sequential runs ignore the number of
+                                // threads, so we only run them once.
+                                if (mode.equals("sequential") &&
+                                    numThreads != threads.get(0))
+                                        continue;
+                                // Exact runs have no cycles.
+                                if (mode.equals("exact") &&
+                                    numCycles != cycles.get(0))
+                                        continue;
+                                long s = seeds.nextLong();
+                                Circle[] c = layout(numCircles, size, s);
+                                double exact = ExactSimulator.area(c, size);
+                                for (int r = -warmup; r < repeats; r++)
+                                        run(meter, mode, numCycles, c, size,
+                                            mode.equals("sequential") ? 1 : numThreads,
+                                            s, r, exact);
+                        }
+                }
+
+                if (json)
+                        out.println("\n]");
+                out.flush();
+        }
+
+        // Return the circles of a combination.
+        private Circle[] layout(int num, float size, long seed)
+        {
+                if (layout.equals("random"))
+                        return Experiment.randCircles(num, size, size, seed);
+
+                // One circle in the middle of each cell of a square
+                // lattice, with a radius of 40% of the side of a cell.
+                int side = (int)Math.ceil(Math.sqrt(num));
+                float cell = size / side;
+                Circle[] c = new Circle[num];
+                for (int i = 0; i < num; i++)
+                        c[i] = new Circle((i % side + 0.5f) * cell,
+                                          (i / side + 0.5f) * cell,
+                                          0.4f * cell);
+                return c;
+        }
+
+        // Run a simulation and write its results if "repeat" isn't
+        // negative.
+        private void run(AllocationMeter meter,
+                         String mode,
+                         long numCycles,
+                         Circle[] c,
+                         float size,
+                         int numThreads,
+                         long seed,
+                         int repeat,
+                         double exact)
+        {
+                SimulationOptions options = new SimulationOptions()
+                        .retention(retention)
+                        .sampling(sampling)
+                        .strata(strata)
+                        .controlVariate(reduction.equals("control") ||
+                                        reduction.equals("both"))
+                        .antithetic(reduction.equals("antithetic") ||
+                                    reduction.equals("both"))
+                        .containment(containment)
+                        .threads(numThreads)
+                        .seed(seed + repeat);
+                Simulator sim;
+                switch (mode) {
+                case "sequential":
+                        sim = new SequentialSimulator(c, numCycles, size, options);
+                        break;
+                case "parallel":
+                        sim = new ParallelSimulator(c, numCycles, size, options);
+                        break;
+                default:
+                        sim = new ExactSimulator(c, size, options);
+                        break;
+                }
+
+                long alloc = meter.allocated();
+                long start = System.nanoTime();
+                sim.run();
+                long wall = System.nanoTime() - start;
+                alloc = meter.allocated() - alloc;
+
+                if (repeat < 0)
+                        return;
+
+                double seconds = wall / 1e9;
+                double estim = sim.currentEstim();
+                Map<String, Object> row = new HashMap<>();
+                row.put("mode", mode);
+                row.put("cycles", numCycles);
+                row.put("circles", c.length);
+                row.put("size", size);
+                row.put("threads", numThreads);
+                row.put("layout", layout);
+                row.put("sampling", sampling.name().toLowerCase(Locale.ROOT));
+                row.put("strata", strata);
+                row.put("reduction", reduction);
+                row.put("repeat", repeat);
+                row.put("estimate", estim);
+                row.put("exact", exact);
+                row.put("error", estim - exact);
+                row.put("half_width", sim.currentHalfWidth());
+                row.put("wall_ms", wall / 1e6);
+                row.put("samples_per_sec", sim.currentCycle() / seconds);
+                row.put("alloc_bytes", alloc);
+                row.put("alloc_bytes_per_sec", alloc / seconds);
+                write(row);
+        }
+
+        private void write(Map<String, Object> row)
+        {
+                StringBuilder sb = new StringBuilder();
+
+                if (json) {
+                        sb.append(written > 0 ? ",\n  {" : "  {");
+                        for (int i = 0; i < COLUMNS.length; i++) {
+                                Object v = row.get(COLUMNS[i]);
+                                if (i > 0)
+                                        sb.append(", ");
+                                sb.append('"').append(COLUMNS[i]).append("\": ");
+                                if (v instanceof String)
+                                        sb.append('"').append(v).append('"');
+                                else
+                                        sb.append(format(v, "null"));
+                        }
+                        sb.append('}');
+                        out.print(sb);
+                } else {
+                        for (int i = 0; i < COLUMNS.length; i++) {
+                                if (i > 0)
+                                        sb.append(',');
+                                sb.append(format(row.get(COLUMNS[i]), ""));
+                        }
+                        out.println(sb);
+                }
+                written++;
+        }
+
+        // Return the text of a value, or "unknown" if it is NaN.
+        private static String format(Object v, String unknown)
+        {
+                if (v instanceof Double) {
+                        double d = (Double)v;
+                        return Double.isNaN(d) || Double.isInfinite(d) ?
+                                unknown : Double.toString(d);
+                }
+                return String.valueOf(v);
+        }
+}
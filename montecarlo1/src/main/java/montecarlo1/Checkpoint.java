@@ -0,0 +1,342 @@
+package montecarlo1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+ * Saves the state of a parallel simulation to a file while it runs,
+ * so that it can carry on from there after a crash or a restart:
+ *
+ *      ParallelSimulator s = ...;
+ *      try (Checkpoint c = Checkpoint.start(s, path, 1000)) {
+ *              s.run();
+ *      }
+ *      ...
+ *      ParallelSimulator s = Checkpoint.restore(path);
+ *      s.run();
+ *
+ * The file is mapped in memory.  It starts with the configuration of
+ * the simulation, circles included, which never changes.  Then come
+ * two regions of the same size that the state of the simulation is
+ * written to in turn: the counters of the experiments and the ranges
+ * of cycles still to be run.  Each region holds a generation number
+ * and a checksum, so if a write is cut short, the other region still
+ * holds the previous state.
+ *
+ * The state is written by a thread of its own, which also flushes
+ * the region to the disk, so the threads running the simulation
+ * never wait for the disk.
+ */
+public class Checkpoint implements AutoCloseable {
+        private static final int MAGIC = 0x4d43434b;
+        private static final int VERSION = 2;
+
+        // Size of the fields at the start of a region: its checksum
+        // and its generation.
+        private static final int REGION_HEADER = 4 + 8;
+
+        // Size of the state of an experiment: its counters, the
+        // range of the sequence it has yet to run, and its moments.
+        private static final int EXPERIMENT_STATE = (4 + 9) * 8;
+
+        private final ParallelSimulator sim;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer map;
+
+        // Offset in the file of the first region.
+        private final int regionStart;
+
+        // Size of a region.
+        private final int regionSize;
+
+        // Largest number of ranges of cycles a region holds.
+        private final int maxRanges;
+
+        // Generation of the last state written.
+        private long generation;
+
+        // Writes the state periodically, or null.
+        private ScheduledExecutorService writer;
+
+        // Create the checkpoint file of the given simulation, which
+        // must not have started yet.  Nothing but the configuration
+        // is written until write() is called.
+        public Checkpoint(ParallelSimulator sim, Path path) throws IOException
+        {
+                this.sim = sim;
+
+                ByteBuffer config = config(sim);
+                int threads = sim.threadNumber();
+                this.regionStart = config.remaining();
+                // A cancelled batch leaves at most one range per
+                // experiment, and they are run again before any
+                // other, so there are hardly ever more ranges than
+                // experiments.
+                this.maxRanges = 2*threads;
+                this.regionSize = REGION_HEADER + 8 + 4 +
+                        threads * EXPERIMENT_STATE + 4 + maxRanges * 2*8;
+
+                this.channel = FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                this.map = channel.map(
+                        FileChannel.MapMode.READ_WRITE,
+                        0, regionStart + 2L*regionSize);
+
+                map.put(config);
+                map.force();
+        }
+
+        // Create the checkpoint file of the given simulation, and
+        // write its state every "periodMillis" milliseconds.
+        public static Checkpoint start(ParallelSimulator sim,
+                                       Path path,
+                                       long periodMillis) throws IOException
+        {
+                Checkpoint c = new Checkpoint(sim, path);
+
+                c.writer = Executors.newSingleThreadScheduledExecutor(
+                        ScenarioScheduler.daemonThreads("checkpoint-"));
+                c.writer.scheduleAtFixedRate(
+                        c::write, periodMillis, periodMillis,
+                        TimeUnit.MILLISECONDS);
+                return c;
+        }
+
+        // Return the configuration of the given simulation, as it
+        // is written at the start of the file.
+        private static ByteBuffer config(ParallelSimulator sim)
+        {
+                SimulationOptions o = sim.options();
+                Precision p = o.precision();
+                ByteBuffer map = ByteBuffer.allocate(
+                        4+4+4+4 + 8+4+4+4+4+8 + 1+1 + 1+8+1+8+8 + 4 +
+                        sim.circles().length * 3*4);
+
+                map.putInt(MAGIC);
+                map.putInt(VERSION);
+                map.putInt(sim.scheduling().ordinal());
+                map.putInt(o.sampling().ordinal());
+                map.putLong(sim.numCycles());
+                map.putFloat(sim.size());
+                map.putInt(sim.threadNumber());
+                map.putInt(o.containment().ordinal());
+                map.putInt(o.strata());
+                map.putLong(o.seed());
+                map.put((byte)(o.controlVariate() ? 1 : 0));
+                map.put((byte)(o.antithetic() ? 1 : 0));
+                map.put((byte)(p != null ? 1 : 0));
+                map.putDouble(p != null ? p.error() : 0);
+                map.put((byte)(p != null && p.isRelative() ? 1 : 0));
+                map.putDouble(p != null ? p.confidence() : 0);
+                map.putDouble(o.confidence());
+                map.putInt(sim.circles().length);
+                for (Circle c: sim.circles()) {
+                        map.putFloat(c.center().x());
+                        map.putFloat(c.center().y());
+                        map.putFloat(c.radius());
+                }
+                return map.flip();
+        }
+
+        // Write the current state of the simulation over the older
+        // of the two regions, and flush it to the disk.  Any thread
+        // may call it.
+        public synchronized void write()
+        {
+                ParallelSimulator.Snapshot s = sim.snapshot();
+                if (s.pending.size() > maxRanges)
+                        // Keep the previous state rather than lose
+                        // cycles.  There are fewer ranges once the
+                        // threads run them.
+                        return;
+
+                generation++;
+                int offset = regionStart + (int)(generation % 2) * regionSize;
+                ByteBuffer r = map.slice(offset, regionSize);
+
+                r.position(4);
+                r.putLong(generation);
+                r.putLong(s.handedOut);
+                r.putInt(s.progress.length);
+                for (Progress p: s.progress) {
+                        r.putLong(p.cycles());
+                        r.putLong(p.inside());
+                        r.putLong(p.position());
+                        r.putLong(p.end());
+
+                        Moments m = p.moments() != null ?
+                                p.moments() : Moments.NONE;
+                        r.putLong(m.n);
+                        r.putLong(m.nn);
+                        r.putLong(m.y);
+                        r.putLong(m.c);
+                        r.putLong(m.ny);
+                        r.putLong(m.nc);
+                        r.putLong(m.yy);
+                        r.putLong(m.cc);
+                        r.putLong(m.yc);
+                }
+                r.putInt(s.pending.size());
+                for (long range[]: s.pending) {
+                        r.putLong(range[0]);
+                        r.putLong(range[1]);
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(r.flip().position(4));
+                r.putInt(0, (int)crc.getValue());
+                map.force(offset, regionSize);
+        }
+
+        // Stop writing the state periodically, write it one last
+        // time and close the file.
+        @Override
+        public void close() throws IOException
+        {
+                if (writer != null) {
+                        writer.shutdown();
+                        try {
+                                writer.awaitTermination(
+                                        Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                        }
+                }
+                write();
+                channel.close();
+        }
+
+        // Rebuild the simulation saved in the given checkpoint file,
+        // from the last state written to it.  It carries on from
+        // there when it runs.  The restored simulation keeps none of
+        // its points, and counts none for display.
+        public static ParallelSimulator restore(Path path) throws IOException
+        {
+                MappedByteBuffer map;
+                try (FileChannel channel = FileChannel.open(
+                             path, StandardOpenOption.READ)) {
+                        map = channel.map(
+                                FileChannel.MapMode.READ_ONLY,
+                                0, channel.size());
+                }
+
+                if (map.remaining() < 8 ||
+                    map.getInt() != MAGIC || map.getInt() != VERSION)
+                        throw new IOException(
+                                "Not a checkpoint file: " + path);
+
+                Scheduling scheduling = Scheduling.values()[map.getInt()];
+                Sampling sampling = Sampling.values()[map.getInt()];
+                long numCycles = map.getLong();
+                float size = map.getFloat();
+                int threads = map.getInt();
+                SimulationOptions options = new SimulationOptions()
+                        .retention(SampleRetention.NONE)
+                        .scheduling(scheduling)
+                        .sampling(sampling)
+                        .threads(threads)
+                        .containment(Containment.values()[map.getInt()])
+                        .strata(map.getInt())
+                        .seed(map.getLong())
+                        .controlVariate(map.get() != 0)
+                        .antithetic(map.get() != 0);
+                boolean hasPrecision = map.get() != 0;
+                double error = map.getDouble();
+                boolean relative = map.get() != 0;
+                double precisionConfidence = map.getDouble();
+                options.confidence(map.getDouble());
+                if (hasPrecision)
+                        options.precision(
+                                relative ?
+                                Precision.relative(error, precisionConfidence) :
+                                Precision.absolute(error, precisionConfidence));
+
+                Circle circles[] = new Circle[map.getInt()];
+                for (int i = 0; i < circles.length; i++)
+                        circles[i] = new Circle(
+                                map.getFloat(), map.getFloat(), map.getFloat());
+
+                ParallelSimulator sim = new ParallelSimulator(
+                        circles, numCycles, size, options);
+
+                int regionStart = map.position();
+                int regionSize = (map.limit() - regionStart) / 2;
+                ParallelSimulator.Snapshot last = null;
+                long lastGeneration = 0;
+                for (int i = 0; i < 2; i++) {
+                        ByteBuffer r = map.slice(
+                                regionStart + i*regionSize, regionSize);
+                        long generation = r.getLong(4);
+                        if (generation > lastGeneration && isValid(r)) {
+                                last = readState(r);
+                                lastGeneration = generation;
+                        }
+                }
+                // Without any state written, the simulation starts
+                // over.
+                if (last != null)
+                        sim.restore(last);
+                return sim;
+        }
+
+        // Does the checksum of the given region match its content?
+        private static boolean isValid(ByteBuffer r)
+        {
+                int pos = REGION_HEADER + 8;
+                int ranges = REGION_HEADER + 8 + 4 +
+                        r.getInt(pos) * EXPERIMENT_STATE;
+                if (r.getInt(pos) < 0 || ranges + 4 > r.limit())
+                        return false;
+
+                int count = r.getInt(ranges);
+                int end = ranges + 4 + count * 2*8;
+                if (count < 0 || end > r.limit())
+                        return false;
+
+                CRC32 crc = new CRC32();
+                crc.update(r.duplicate().limit(end).position(4));
+                return r.getInt(0) == (int)crc.getValue();
+        }
+
+        private static ParallelSimulator.Snapshot readState(ByteBuffer r)
+        {
+                r.position(REGION_HEADER);
+
+                long handedOut = r.getLong();
+                Progress progress[] = new Progress[r.getInt()];
+                for (int i = 0; i < progress.length; i++)
+                        progress[i] = new Progress(
+                                r.getLong(), r.getLong(),
+                                r.getLong(), r.getLong(),
+                                new Moments(Double.NaN,
+                                            r.getLong(), r.getLong(),
+                                            r.getLong(), r.getLong(),
+                                            r.getLong(), r.getLong(),
+                                            r.getLong(), r.getLong(),
+                                            r.getLong()));
+
+                List<long[]> pending = new ArrayList<>();
+                int count = r.getInt();
+                for (int i = 0; i < count; i++)
+                        pending.add(new long[] { r.getLong(), r.getLong() });
+
+                return new ParallelSimulator.Snapshot(
+                        progress, handedOut, pending);
+        }
+}
@@ -1,4 +1,7 @@
+package montecarlo1;
+
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /*
  * Represent a circle in a plane.
@@ -29,8 +32,15 @@ public class Circle {
         // the circle.
         public boolean contains(Point p)
         {
-                float dx = p.x() - center.x();
-                float dy = p.y() - center.y();
+                return contains(p.x(), p.y());
+        }
+
+        // Return true if the point (x, y) is inside the area
+        // delimited by the circle.
+        public boolean contains(float x, float y)
+        {
+                float dx = x - center.x();
+                float dy = y - center.y();
                 
                 return dx*dx + dy*dy <= radius*radius;                
         }
@@ -42,9 +52,19 @@ public class Circle {
         public static Circle random(float width,
                                     float height,
                                     float maxRadius)
+        {
+                return random(
+                        ThreadLocalRandom.current(), width, height, maxRadius);
+        }
+
+        // Same as above, with the random values drawn from "rnd".
+        public static Circle random(RandomGenerator rnd,
+                                    float width,
+                                    float height,
+                                    float maxRadius)
         {
                 return new Circle(
-                        Point.random(0, width, 0, height),
-                        maxRadius * ThreadLocalRandom.current().nextFloat());
+                        Point.random(rnd, 0, width, 0, height),
+                        maxRadius * rnd.nextFloat());
         }
 }
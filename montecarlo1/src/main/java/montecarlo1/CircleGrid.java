@@ -0,0 +1,247 @@
+package montecarlo1;
+
+/*
+ * A uniform grid over a rectangle of the plane that tells, for any
+ * point of the rectangle, which circles may contain it.
+ *
+ * Each cell lists the circles that overlap it.  Testing whether a
+ * point lies in the union of the circles then only costs a few
+ * containment tests against the circles of its cell, instead of one
+ * test per circle.
+ *
+ * The lists of all the cells are stored one after the other in flat
+ * arrays of centers and squared radii, so looking up a cell doesn't
+ * go through any Circle or Point object.
+ */
+public class CircleGrid implements ContainmentKernel {
+        // Upper bound on the number of cells of a grid.
+        private static final int MAX_CELLS = 1 << 22;
+
+        // Below this number of circles, finding the cell of a point
+        // costs more than testing all the circles, so the grid is
+        // made of a single cell.
+        private static final int MIN_CIRCLES = 16;
+
+        // Lower left corner of the rectangle covered by the grid.
+        private final float minX;
+        private final float minY;
+
+        // Number of columns and rows of the grid.
+        private final int cols;
+        private final int rows;
+
+        // Is the grid made of a single cell?
+        private final boolean singleCell;
+
+        // Number of cells per unit of length along each axis.
+        private final float invCellWidth;
+        private final float invCellHeight;
+
+        // The circles overlapping the cell (col, row) are stored
+        // between indices start[row*cols + col] (included) and
+        // start[row*cols + col + 1] (excluded) of the arrays below.
+        private final int start[];
+
+        // Abscissas of the centers of the circles.
+        private float cx[];
+
+        // Ordinates of the centers of the circles.
+        private float cy[];
+
+        // Squared radii of the circles.
+        private float r2[];
+
+        // Build a grid over the given rectangle.  Unless "prepare" is
+        // false, the circles go through CirclePreprocessor first.
+        public CircleGrid(Circle[] circles,
+                          float minX,
+                          float minY,
+                          float width,
+                          float height,
+                          boolean prepare)
+        {
+                if (prepare)
+                        circles = CirclePreprocessor.prepare(circles);
+
+                this.minX = minX;
+                this.minY = minY;
+
+                // We make the cells as large as the largest radius,
+                // so a circle overlaps at most 3x3 cells, unless this
+                // would give us too many cells.
+                float maxRadius = 0;
+                for (Circle c : circles)
+                        maxRadius = Math.max(maxRadius, c.radius());
+                double side = Math.max(
+                        maxRadius, Math.sqrt((double)width*height / MAX_CELLS));
+                if (side <= 0 || circles.length < MIN_CIRCLES)
+                        side = Double.POSITIVE_INFINITY;
+
+                this.cols = (int)Math.max(1, Math.ceil(width / side));
+                this.rows = (int)Math.max(1, Math.ceil(height / side));
+                this.singleCell = cols == 1 && rows == 1;
+                this.invCellWidth = width > 0 ? cols / width : 0;
+                this.invCellHeight = height > 0 ? rows / height : 0;
+
+                float cellWidth = width / cols;
+                float cellHeight = height / rows;
+
+                // Rounding may map a point lying right on the border
+                // of a cell to its neighbour, so circles that only
+                // graze a cell are registered in it as well.
+                float padX = cellWidth * 1e-4f;
+                float padY = cellHeight * 1e-4f;
+
+                // First count the circles of each cell, then fill the
+                // cells once we know where each of them starts.
+                this.start = new int[cols*rows + 1];
+                for (int pass = 0; pass < 2; pass++) {
+                        int fill[] = pass == 1 ? start.clone() : null;
+
+                        for (Circle c : circles) {
+                                float x = c.center().x();
+                                float y = c.center().y();
+                                float r = c.radius();
+                                int col0 = col(x - r), col1 = col(x + r);
+                                int row0 = row(y - r), row1 = row(y + r);
+
+                                if (x + r < minX || x - r > minX + width ||
+                                    y + r < minY || y - r > minY + height)
+                                        continue;
+
+                                for (int i = row0; i <= row1; i++)
+                                        for (int j = col0; j <= col1; j++) {
+                                                if (!overlaps(x, y, r,
+                                                              minX + j*cellWidth - padX,
+                                                              minY + i*cellHeight - padY,
+                                                              cellWidth + 2*padX,
+                                                              cellHeight + 2*padY))
+                                                        continue;
+
+                                                int cell = i*cols + j;
+                                                if (pass == 0) {
+                                                        start[cell + 1]++;
+                                                } else {
+                                                        int k = fill[cell]++;
+                                                        cx[k] = x;
+                                                        cy[k] = y;
+                                                        r2[k] = r*r;
+                                                }
+                                        }
+                        }
+
+                        if (pass == 0) {
+                                for (int i = 0; i < cols*rows; i++)
+                                        start[i + 1] += start[i];
+                                cx = new float[start[cols*rows]];
+                                cy = new float[cx.length];
+                                r2 = new float[cx.length];
+                        }
+                }
+        }
+
+        // Return true if the circle of center (x, y) and radius r
+        // overlaps the given rectangle.
+        private static boolean overlaps(float x, float y, float r,
+                                        float rx, float ry,
+                                        float rw, float rh)
+        {
+                float dx = x - Math.max(rx, Math.min(x, rx + rw));
+                float dy = y - Math.max(ry, Math.min(y, ry + rh));
+
+                return dx*dx + dy*dy <= r*r;
+        }
+
+        // Return the column of the grid the abscissa x falls in.
+        // Abscissas outside of the grid are mapped to its borders.
+        private int col(float x)
+        {
+                int j = (int)((x - minX) * invCellWidth);
+                return Math.max(0, Math.min(j, cols - 1));
+        }
+
+        // Return the row of the grid the ordinate y falls in.
+        // Ordinates outside of the grid are mapped to its borders.
+        private int row(float y)
+        {
+                int i = (int)((y - minY) * invCellHeight);
+                return Math.max(0, Math.min(i, rows - 1));
+        }
+
+        public CircleGrid(Circle[] circles,
+                          float minX,
+                          float minY,
+                          float width,
+                          float height)
+        {
+                this(circles, minX, minY, width, height, true);
+        }
+
+        // Return true if the point (x, y) is inside at least one of
+        // the circles.
+        public boolean contains(float x, float y)
+        {
+                int cell = singleCell ? 0 : row(y)*cols + col(x);
+                int end = start[cell + 1];
+
+                for (int k = start[cell]; k < end; k++) {
+                        float dx = x - cx[k];
+                        float dy = y - cy[k];
+                        if (dx*dx + dy*dy <= r2[k])
+                                return true;
+                }
+                return false;
+        }
+
+        // Return the number of circles that contain the point (x, y).
+        public int count(float x, float y)
+        {
+                int cell = singleCell ? 0 : row(y)*cols + col(x);
+                int end = start[cell + 1];
+                int count = 0;
+
+                for (int k = start[cell]; k < end; k++) {
+                        float dx = x - cx[k];
+                        float dy = y - cy[k];
+                        if (dx*dx + dy*dy <= r2[k])
+                                count++;
+                }
+                return count;
+        }
+
+        // Return the number of circles the point (x, y) is tested
+        // against by contains().
+        public int tests(float x, float y)
+        {
+                int cell = singleCell ? 0 : row(y)*cols + col(x);
+                int end = start[cell + 1];
+
+                for (int k = start[cell]; k < end; k++) {
+                        float dx = x - cx[k];
+                        float dy = y - cy[k];
+                        if (dx*dx + dy*dy <= r2[k])
+                                return k - start[cell] + 1;
+                }
+                return end - start[cell];
+        }
+
+        @Override
+        public int test(float xs[], float ys[], boolean inside[], int n)
+        {
+                int count = 0;
+
+                for (int i = 0; i < n; i++)
+                        if (inside[i] = contains(xs[i], ys[i]))
+                                count++;
+                return count;
+        }
+
+        // Return the average number of circles per cell.
+        public double averageCandidates()
+        {
+                return (double)cx.length / (cols*rows);
+        }
+
+        public int cols() { return cols; }
+        public int rows() { return rows; }
+}
@@ -0,0 +1,157 @@
+package montecarlo1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/*
+ * Prepares the circles of a simulation for the containment tests of
+ * its points.
+ *
+ * A point is tested against the circles of its cell one after the
+ * other until one of them contains it.  So we drop the circles that
+ * lie entirely inside another one, since no point is inside them
+ * only, and test the larger circles first, since a point is more
+ * likely to fall inside them.  The union of the circles, hence the
+ * estimate, doesn't change.
+ */
+public final class CirclePreprocessor {
+        private CirclePreprocessor() {}
+
+        // A circle is only dropped if it stays inside another one
+        // whose radius is this much smaller, so that rounding can't
+        // put any point inside the first one and outside the other.
+        private static final double MARGIN = 1e-6;
+
+        // Return the circles that don't lie inside another one, from
+        // the largest to the smallest.  Among equal circles, only the
+        // first one is kept.
+        public static Circle[] prepare(Circle[] circles)
+        {
+                Circle sorted[] = circles.clone();
+                Arrays.sort(sorted,
+                            Comparator.comparingDouble(Circle::radius).reversed());
+                if (sorted.length < 2)
+                        return sorted;
+
+                // A circle can only lie inside a larger one whose
+                // center is less than the largest radius away from
+                // its own.  So we put the centers of the circles kept
+                // in cells as large as that radius, and only look for
+                // the circles of the cells around.
+                double side = sorted[0].radius();
+                if (!(side > 0))
+                        return sorted;
+
+                Map<Long, List<Circle>> cells = new HashMap<>();
+                List<Circle> kept = new ArrayList<>();
+                for (Circle c: sorted) {
+                        long col = (long)Math.floor(c.center().x() / side);
+                        long row = (long)Math.floor(c.center().y() / side);
+
+                        if (!insideAny(c, cells, col, row)) {
+                                kept.add(c);
+                                cells.computeIfAbsent(cell(col, row),
+                                                      k -> new ArrayList<>())
+                                        .add(c);
+                        }
+                }
+                return kept.toArray(new Circle[0]);
+        }
+
+        // Is the circle "c", whose center lies in the cell (col, row),
+        // inside one of the circles of the cells around?
+        private static boolean insideAny(Circle c,
+                                         Map<Long, List<Circle>> cells,
+                                         long col,
+                                         long row)
+        {
+                for (long i = row - 1; i <= row + 1; i++)
+                        for (long j = col - 1; j <= col + 1; j++) {
+                                List<Circle> list = cells.get(cell(j, i));
+                                if (list == null)
+                                        continue;
+                                for (Circle o: list)
+                                        if (inside(c, o) || same(c, o))
+                                                return true;
+                        }
+                return false;
+        }
+
+        // Does the circle "c" lie inside the circle "o"?
+        private static boolean inside(Circle c, Circle o)
+        {
+                double dx = (double)c.center().x() - o.center().x();
+                double dy = (double)c.center().y() - o.center().y();
+
+                return Math.sqrt(dx*dx + dy*dy) + c.radius() <=
+                        o.radius() * (1 - MARGIN);
+        }
+
+        // Are the circles "c" and "o" the same?  The margin of
+        // inside() keeps a circle inside its copy, but dropping it
+        // can't change any containment test.
+        private static boolean same(Circle c, Circle o)
+        {
+                return c.center().x() == o.center().x() &&
+                        c.center().y() == o.center().y() &&
+                        c.radius() == o.radius();
+        }
+
+        private static long cell(long col, long row)
+        {
+                return col * 0x9e3779b97f4a7c15L + row;
+        }
+
+        // Return the average number of containment tests per point
+        // of a grid of the given circles, prepared or not, over "n"
+        // random points of the given rectangle.
+        public static double testsPerPoint(Circle[] circles,
+                                           boolean prepare,
+                                           float minX,
+                                           float minY,
+                                           float width,
+                                           float height,
+                                           int n,
+                                           long seed)
+        {
+                CircleGrid grid = new CircleGrid(
+                        circles, minX, minY, width, height, prepare);
+                SplittableRandom rnd = new SplittableRandom(seed);
+                long tests = 0;
+
+                for (int i = 0; i < n; i++)
+                        tests += grid.tests(minX + width * rnd.nextFloat(),
+                                            minY + height * rnd.nextFloat());
+                return (double)tests / n;
+        }
+
+        // Print how many circles the preparation drops, and how many
+        // containment tests per point it saves, for random circles:
+        //
+        //      java -cp montecarlo1.jar montecarlo1.CirclePreprocessor \
+        //              10 100 1000 10000
+        public static void main(String[] args)
+        {
+                final int points = 1_000_000;
+
+                System.out.println("circles,kept,tests_before,tests_after,saved");
+                for (String arg: args.length > 0 ?
+                             args : new String[] { "10", "100", "1000", "10000" }) {
+                        int num = Integer.parseInt(arg);
+                        Circle circles[] = Experiment.randCircles(num, 1, 1, num);
+                        double before = testsPerPoint(
+                                circles, false, 0, 0, 1, 1, points, 1);
+                        double after = testsPerPoint(
+                                circles, true, 0, 0, 1, 1, points, 1);
+                        System.out.printf("%d,%d,%.3f,%.3f,%.1f%%%n",
+                                          num, prepare(circles).length,
+                                          before, after,
+                                          100 * (1 - after / before));
+                }
+        }
+}
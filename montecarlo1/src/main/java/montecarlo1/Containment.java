@@ -0,0 +1,56 @@
+package montecarlo1;
+
+/*
+ * How an experiment tests its random points against the circles.
+ */
+public enum Containment {
+        // Test the points one by one against the few circles of
+        // their cell in a CircleGrid.  The cost of a test barely
+        // depends on the number of circles.
+        GRID,
+
+        // Test whole vectors of points at once against every circle
+        // with SIMD instructions.  This beats the grid when there are
+        // few circles.  It needs the jdk.incubator.vector module and
+        // falls back to GRID when the module isn't available.
+        VECTOR;
+
+        // Name of the class implementing the VECTOR kernel.  We only
+        // load it by name, so that nothing links against the vector
+        // API when the module is missing.
+        private static final String VECTOR_KERNEL =
+                Containment.class.getPackageName() + ".VectorKernel";
+
+        // Is the vector API available in this JVM?
+        public static boolean vectorAvailable()
+        {
+                return ModuleLayer.boot()
+                        .findModule("jdk.incubator.vector")
+                        .isPresent();
+        }
+
+        // Return the kernel that tests points of the given rectangle
+        // against the circles.  The CircleGrid is only built for
+        // GRID, or when VECTOR falls back to it, since with many
+        // circles it takes time and memory.
+        public ContainmentKernel kernel(Circle[] circles,
+                                        float minX,
+                                        float minY,
+                                        float width,
+                                        float height)
+        {
+                if (this == GRID || !vectorAvailable())
+                        return new CircleGrid(circles, minX, minY, width, height);
+
+                try {
+                        return (ContainmentKernel)Class.forName(VECTOR_KERNEL)
+                                .getConstructor(Circle[].class,
+                                                float.class, float.class,
+                                                float.class, float.class)
+                                .newInstance(circles,
+                                             minX, minY, width, height);
+                } catch (ReflectiveOperationException | LinkageError e) {
+                        return new CircleGrid(circles, minX, minY, width, height);
+                }
+        }
+}
@@ -0,0 +1,11 @@
+package montecarlo1;
+
+/*
+ * Tests blocks of points for containment in a union of circles.
+ */
+public interface ContainmentKernel {
+        // For each i below n, set inside[i] to true if the point
+        // (xs[i], ys[i]) lies inside at least one of the circles, and
+        // to false otherwise.  Return the number of points inside.
+        int test(float xs[], float ys[], boolean inside[], int n);
+}
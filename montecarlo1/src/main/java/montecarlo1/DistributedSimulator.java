@@ -0,0 +1,662 @@
+package montecarlo1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runs a simulation on worker processes, possibly on other hosts,
+ * that connect to it over TCP.  See Worker for the other end.
+ *
+ * This is the coordinator.  It cuts the cycles into batches, like a
+ * ParallelSimulator with Scheduling.BATCHES, and hands them out to
+ * the workers that connected.  Each worker gets the circles and the
+ * seed once, and then only the index of the first cycle and the
+ * length of its batches, which it runs on a slice of the same
+ * sequence of points.  It sends back the number of points of each
+ * batch that fell inside the circles.  These counts add up, and
+ * determine the variance of the estimate.  So a batch gives the same
+ * result whichever worker runs it, and the estimate is the same as
+ * that of a ParallelSimulator with the same seed.
+ *
+ * A worker whose connection breaks loses its batches to the other
+ * workers.  So does a worker that takes much longer than usual to
+ * run a batch.  It may still send its result, but the coordinator
+ * only counts the first result of each batch.
+ *
+ * The protocol is made of the messages below, written with a
+ * DataOutputStream.  A worker sends HELLO with its number of threads
+ * when it connects, and gets CONFIG back.  Then it gets BATCH
+ * messages and answers each with RESULT until it gets STOP.  A batch
+ * that fails on a worker would fail on all of them, so the worker
+ * answers it with ERROR instead, and the simulation fails.
+ */
+public class DistributedSimulator implements Simulator, AutoCloseable {
+        // HELLO threads
+        static final byte HELLO = 'H';
+
+        // CONFIG size sampling containment strata seed numCircles
+        //        (x y radius)...
+        static final byte CONFIG = 'C';
+
+        // BATCH id start length
+        static final byte BATCH = 'B';
+
+        // RESULT id cycles inside
+        static final byte RESULT = 'R';
+
+        // ERROR id message
+        static final byte ERROR = 'E';
+
+        // STOP
+        static final byte STOP = 'S';
+
+        // Bounds on the number of cycles of a batch.  Batches are
+        // larger than in a ParallelSimulator, so that the time spent
+        // sending them is nothing compared to running them.
+        private static final long MIN_BATCH = 1 << 14;
+        private static final long MAX_BATCH = 1 << 22;
+
+        // Number of batches handed out to a worker at once, per
+        // thread, so that it never waits for the next one.
+        private static final int BATCHES_PER_THREAD = 2;
+
+        // A batch is handed out again once it has run for this many
+        // times the average time of a batch, and at least for
+        // MIN_TIMEOUT_NANOS.
+        private static final int STRAGGLER_FACTOR = 8;
+        private static final long MIN_TIMEOUT_NANOS =
+                TimeUnit.SECONDS.toNanos(2);
+
+        // Period of the checks for late batches.
+        private static final long CHECK_PERIOD_MILLIS = 100;
+
+        // Longest time runBatch() waits for a result.
+        private static final long WAIT_MILLIS = 100;
+
+        private final Circle circles[];
+
+        private final float size;
+
+        private final long numCycles;
+
+        // The options of the simulation, with the seed it uses.
+        private final SimulationOptions options;
+
+        private final long batchSize;
+
+        private final long numBatches;
+
+        // The part of the estimate known without drawing any point,
+        // and the area the points are drawn from.
+        private final double exactArea;
+        private final double sampledArea;
+
+        // Precision after which we stop, or null.
+        private final Precision precision;
+
+        // Half-width of the standard normal interval at the
+        // confidence level of the simulation.
+        private final double z;
+
+        private final RunControl control = new RunControl();
+
+        private final ServerSocket server;
+
+        // The workers connected so far.
+        private final List<Connection> connections =
+                new CopyOnWriteArrayList<>();
+
+        // Hands out the batches that are late again.
+        private final ScheduledExecutorService monitor;
+
+        // The fields below are guarded by "this".
+
+        // Index of the first batch never handed out.
+        private long nextBatch;
+
+        // Batches to hand out again before any new one, because their
+        // worker is gone or late.  "retrying" holds the same ones.
+        private final ArrayDeque<Long> retry = new ArrayDeque<>();
+        private final Set<Long> retrying = new HashSet<>();
+
+        // The batches whose result was counted.
+        private final BitSet done = new BitSet();
+        private long batchesDone;
+
+        // The counters of the batches done.
+        private long cycles;
+        private long inside;
+
+        // Average time between handing out a batch and getting its
+        // result back, in nanoseconds, or 0 before the first one.
+        private double batchNanos;
+
+        // Set once the first batch can be handed out.
+        private boolean started;
+
+        // Set once all the batches are done or the target precision
+        // is reached.
+        private boolean finished;
+
+        // Why a worker couldn't run a batch, if one couldn't.
+        private String failure;
+
+        // Listen on the given port, or any free one if it is 0, for
+        // workers to run the simulation.  They may connect before or
+        // while it runs.
+        public DistributedSimulator(Circle[] circles,
+                                    long numCycles,
+                                    float size,
+                                    int port,
+                                    SimulationOptions options) throws IOException
+        {
+                options = options.copy().seed(options.effectiveSeed());
+
+                this.circles = circles;
+                this.size = size;
+                this.numCycles = numCycles;
+                this.options = options;
+                this.precision = options.precision();
+                this.z = Statistics.zScore(options.confidence());
+
+                // Enough batches to share among many workers, but
+                // few enough to count them in a BitSet.
+                this.batchSize = Math.max(
+                        Math.max(MIN_BATCH, Math.min(MAX_BATCH, numCycles / 4096)),
+                        (numCycles - 1) / Integer.MAX_VALUE + 1);
+                this.numBatches = (numCycles + batchSize - 1) / batchSize;
+
+                if (options.strata() > 0) {
+                        Strata strata = new Strata(
+                                circles, 0, 0, size, size, options.strata());
+                        this.exactArea = strata.exactArea();
+                        this.sampledArea = strata.sampledArea();
+                } else {
+                        this.exactArea = 0;
+                        this.sampledArea = (double)size * size;
+                }
+
+                this.server = new ServerSocket(port);
+                Thread acceptor = ScenarioScheduler
+                        .daemonThreads("coordinator-accept-")
+                        .newThread(this::accept);
+                acceptor.start();
+
+                this.monitor = Executors.newSingleThreadScheduledExecutor(
+                        ScenarioScheduler.daemonThreads("coordinator-monitor-"));
+                monitor.scheduleAtFixedRate(
+                        this::retryLate,
+                        CHECK_PERIOD_MILLIS, CHECK_PERIOD_MILLIS,
+                        TimeUnit.MILLISECONDS);
+        }
+
+        public DistributedSimulator(int numCircles,
+                                    long numCycles,
+                                    float size,
+                                    int port,
+                                    SimulationOptions options) throws IOException
+        {
+                this(Experiment.randCircles(
+                             numCircles, size, size, options.effectiveSeed()),
+                     numCycles,
+                     size,
+                     port,
+                     options);
+        }
+
+        // Return the port workers connect to.
+        public int port() { return server.getLocalPort(); }
+
+        // Return the number of workers connected.
+        public int numWorkers() { return connections.size(); }
+
+        /*
+         * A connected worker.
+         */
+        private class Connection {
+                private final Socket socket;
+                private final DataInputStream in;
+                private final DataOutputStream out;
+
+                // Number of batches the worker may have at once.
+                private int window;
+
+                // The batches handed out to the worker and not done
+                // yet, with the time they were handed out, or null
+                // once they were handed out again to another worker
+                // for being late.  Guarded by the simulator.
+                private final Map<Long, Long> outstanding = new HashMap<>();
+
+                Connection(Socket socket) throws IOException
+                {
+                        this.socket = socket;
+                        this.in = new DataInputStream(
+                                new BufferedInputStream(socket.getInputStream()));
+                        this.out = new DataOutputStream(
+                                new BufferedOutputStream(socket.getOutputStream()));
+                }
+
+                // Send the given batches, and flush them.
+                synchronized void send(List<Long> batches) throws IOException
+                {
+                        for (long id: batches) {
+                                long start = id * batchSize;
+                                out.writeByte(BATCH);
+                                out.writeLong(id);
+                                out.writeLong(start);
+                                out.writeLong(Math.min(batchSize, numCycles - start));
+                        }
+                        out.flush();
+                }
+
+                synchronized void stop()
+                {
+                        try {
+                                out.writeByte(STOP);
+                                out.flush();
+                        } catch (IOException e) {
+                                // Gone already.
+                        }
+                }
+
+                void close()
+                {
+                        try {
+                                socket.close();
+                        } catch (IOException e) {
+                                // Nothing left to do with it.
+                        }
+                }
+        }
+
+        // Accept workers until the simulator is closed.  Each one is
+        // served by a thread of its own.
+        private void accept()
+        {
+                try {
+                        for (;;) {
+                                Socket s = server.accept();
+                                ScenarioScheduler
+                                        .daemonThreads("coordinator-worker-")
+                                        .newThread(() -> serve(s))
+                                        .start();
+                        }
+                } catch (IOException e) {
+                        // The server socket is closed.
+                }
+        }
+
+        // Configure the worker on the other end of "s", then count
+        // its results and keep it busy until it is gone.
+        private void serve(Socket s)
+        {
+                Connection c = null;
+                try {
+                        s.setTcpNoDelay(true);
+                        c = new Connection(s);
+                        if (c.in.readByte() != HELLO)
+                                throw new IOException("Expected HELLO");
+                        c.window = Math.max(1, c.in.readInt()) * BATCHES_PER_THREAD;
+                        synchronized (c) {
+                                writeConfig(c.out);
+                                c.out.flush();
+                        }
+                        connections.add(c);
+                        dispatch(c);
+
+                        for (;;) {
+                                byte type = c.in.readByte();
+                                if (type == ERROR) {
+                                        long id = c.in.readLong();
+                                        fail("Batch " + id + " failed: " +
+                                             c.in.readUTF());
+                                        continue;
+                                }
+                                if (type != RESULT)
+                                        throw new IOException("Expected RESULT");
+                                long id = c.in.readLong();
+                                long cycles = c.in.readLong();
+                                long inside = c.in.readLong();
+                                result(c, id, cycles, inside);
+                                dispatch(c);
+                        }
+                } catch (IOException e) {
+                        if (c != null)
+                                lost(c);
+                        else
+                                try {
+                                        s.close();
+                                } catch (IOException ex) {
+                                        // Nothing left to do with it.
+                                }
+                }
+        }
+
+        private void writeConfig(DataOutputStream out) throws IOException
+        {
+                out.writeByte(CONFIG);
+                out.writeFloat(size);
+                out.writeUTF(options.sampling().name());
+                out.writeUTF(options.containment().name());
+                out.writeInt(options.strata());
+                out.writeLong(options.seed());
+                out.writeInt(circles.length);
+                for (Circle c: circles) {
+                        out.writeFloat(c.center().x());
+                        out.writeFloat(c.center().y());
+                        out.writeFloat(c.radius());
+                }
+        }
+
+        // Count the result of a batch, unless another worker already
+        // sent it.
+        private synchronized void result(Connection c,
+                                         long id,
+                                         long cycles,
+                                         long inside)
+        {
+                Long sent = c.outstanding.remove(id);
+                if (sent != null) {
+                        double nanos = System.nanoTime() - sent;
+                        batchNanos = batchNanos == 0 ?
+                                nanos : 0.9 * batchNanos + 0.1 * nanos;
+                }
+                if (id < 0 || id >= numBatches || done.get((int)id))
+                        return;
+
+                done.set((int)id);
+                batchesDone++;
+                this.cycles += cycles;
+                this.inside += inside;
+                if (batchesDone == numBatches ||
+                    (precision != null &&
+                     precision.reached(currentEstim(),
+                                       currentHalfWidth(),
+                                       this.cycles)))
+                        finish();
+                notifyAll();
+        }
+
+        // Hand out batches to the given worker until it has as many
+        // as it may have at once.
+        private void dispatch(Connection c)
+        {
+                List<Long> batches = new ArrayList<>();
+
+                synchronized (this) {
+                        if (!started || finished ||
+                            control.isPaused() || control.isCancelled() ||
+                            !connections.contains(c))
+                                return;
+
+                        while (c.outstanding.size() < c.window) {
+                                Long id = nextRetry(c);
+                                if (id == null) {
+                                        if (nextBatch == numBatches)
+                                                break;
+                                        id = nextBatch++;
+                                }
+                                c.outstanding.put(id, System.nanoTime());
+                                batches.add(id);
+                        }
+                }
+                if (batches.isEmpty())
+                        return;
+                try {
+                        c.send(batches);
+                } catch (IOException e) {
+                        lost(c);
+                }
+        }
+
+        private void dispatchAll()
+        {
+                for (Connection c: connections)
+                        dispatch(c);
+        }
+
+        // Return the next batch to hand out again that the given
+        // worker doesn't already have, or null.
+        private Long nextRetry(Connection c)
+        {
+                for (int i = retry.size(); i > 0; i--) {
+                        Long id = retry.poll();
+                        if (done.get((int)(long)id)) {
+                                retrying.remove(id);
+                                continue;
+                        }
+                        if (!c.outstanding.containsKey(id)) {
+                                retrying.remove(id);
+                                return id;
+                        }
+                        retry.add(id);
+                }
+                return null;
+        }
+
+        // Hand out again the batches of a worker that is gone.
+        private void lost(Connection c)
+        {
+                connections.remove(c);
+                c.close();
+                synchronized (this) {
+                        for (long id: c.outstanding.keySet())
+                                requeue(id);
+                        c.outstanding.clear();
+                }
+                dispatchAll();
+        }
+
+        // Hand out again the batches that are late.
+        private void retryLate()
+        {
+                synchronized (this) {
+                        if (!started || finished)
+                                return;
+
+                        long timeout = Math.max(
+                                MIN_TIMEOUT_NANOS,
+                                (long)(STRAGGLER_FACTOR * batchNanos));
+                        long now = System.nanoTime();
+                        // Each late batch is handed out again once, so
+                        // its entry no longer counts as late.  The
+                        // worker it was handed out to may be late in
+                        // turn.
+                        for (Connection c: connections)
+                                for (Map.Entry<Long, Long> e:
+                                             c.outstanding.entrySet())
+                                        if (e.getValue() != null &&
+                                            now - e.getValue() > timeout) {
+                                                requeue(e.getKey());
+                                                e.setValue(null);
+                                        }
+                }
+                dispatchAll();
+        }
+
+        private void requeue(long id)
+        {
+                if (!done.get((int)id) && retrying.add(id))
+                        retry.add(id);
+        }
+
+        // Give up on the simulation, for the given reason.
+        private synchronized void fail(String reason)
+        {
+                if (finished)
+                        return;
+                failure = reason;
+                finish();
+                notifyAll();
+        }
+
+        // Tell the workers we are done, and stop listening.
+        private void finish()
+        {
+                finished = true;
+                for (Connection c: connections)
+                        c.stop();
+                close();
+        }
+
+        // Stop listening for workers and disconnect the ones that
+        // are connected.  The simulation can't run anymore.
+        @Override
+        public void close()
+        {
+                monitor.shutdown();
+                try {
+                        server.close();
+                } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                }
+                for (Connection c: connections)
+                        c.close();
+        }
+
+        public void run()
+        {
+                while (runBatch())
+                        ;
+        }
+
+        // Hand out batches if there are workers to take them, and
+        // wait a little for their results.  Nothing runs in the
+        // calling thread.
+        @Override
+        public boolean runBatch()
+        {
+                if (!control.proceed())
+                        return false;
+
+                synchronized (this) {
+                        checkFailure();
+                        if (finished)
+                                return false;
+                        started = true;
+                        // Without any batch, no result would ever
+                        // finish the simulation.
+                        if (numBatches == 0) {
+                                finish();
+                                return false;
+                        }
+                }
+                dispatchAll();
+
+                synchronized (this) {
+                        try {
+                                if (!finished)
+                                        wait(WAIT_MILLIS);
+                        } catch (InterruptedException e) {
+                                control.cancel();
+                                Thread.currentThread().interrupt();
+                        }
+                        checkFailure();
+                        return !finished && !control.isCancelled();
+                }
+        }
+
+        private void checkFailure()
+        {
+                if (failure != null)
+                        throw new IllegalStateException(failure);
+        }
+
+        @Override
+        public int parallelism() { return 1; }
+
+        @Override
+        public RunControl control() { return control; }
+
+        public synchronized double currentEstim()
+        {
+                return exactArea + (double)inside/cycles * sampledArea;
+        }
+
+        public synchronized double currentHalfWidth()
+        {
+                return z * Math.sqrt(
+                        Statistics.variance(sampledArea, inside, cycles));
+        }
+
+        // The points stay in the workers.
+        @Override
+        public SampleCursor iterator() { return SampleCursor.EMPTY; }
+
+        @Override
+        public void histogram(HitHistogram into) { into.clear(); }
+
+        public float size() { return size; }
+        public long numCycles() { return numCycles; }
+        public synchronized long currentCycle() { return cycles; }
+        public Circle[] circles() { return circles; }
+
+        // Run a simulation on the workers that connect to it, or on
+        // local ones:
+        //
+        //      java -cp montecarlo1.jar montecarlo1.DistributedSimulator \
+        //              --local 4 --cycles 1000000000 --circles 100
+        //
+        // Workers on other hosts run montecarlo1.Worker with the host
+        // and port of the coordinator.
+        public static void main(String[] args) throws IOException
+        {
+                int port = 0;
+                int local = 0;
+                int threads = 1;
+                long numCycles = 100_000_000L;
+                int numCircles = 10;
+                SimulationOptions options = new SimulationOptions();
+
+                for (int i = 0; i + 1 < args.length; i += 2) {
+                        String val = args[i + 1];
+                        switch (args[i]) {
+                        case "--port": port = Integer.parseInt(val); break;
+                        case "--local": local = Integer.parseInt(val); break;
+                        case "--threads": threads = Integer.parseInt(val); break;
+                        case "--cycles": numCycles = Long.parseLong(val); break;
+                        case "--circles": numCircles = Integer.parseInt(val); break;
+                        case "--seed": options.seed(Long.parseLong(val)); break;
+                        default:
+                                System.err.println("Unknown option: " + args[i]);
+                                System.exit(2);
+                        }
+                }
+
+                DistributedSimulator s = new DistributedSimulator(
+                        numCircles, numCycles, 1, port, options);
+                System.err.println("Listening on port " + s.port());
+
+                List<Process> workers = new ArrayList<>();
+                for (int i = 0; i < local; i++)
+                        workers.add(Worker.launch("localhost", s.port(), threads));
+
+                long start = System.nanoTime();
+                s.run();
+                System.out.printf("Area: %.6f +/- %.6f (%d cycles, %d ms)%n",
+                                  s.currentEstim(), s.currentHalfWidth(),
+                                  s.currentCycle(),
+                                  (System.nanoTime() - start) / 1_000_000);
+                s.close();
+                for (Process p: workers)
+                        p.destroy();
+        }
+}
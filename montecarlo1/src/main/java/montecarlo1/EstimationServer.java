@@ -0,0 +1,763 @@
+package montecarlo1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Runs estimation jobs submitted over HTTP:
+ *
+ *      java -cp montecarlo1.jar montecarlo1.EstimationServer \
+ *              [PORT [WORKERS [QUEUE [CACHE_DIR]]]]
+ *
+ * The parameters of a job are form fields, in the query or in the
+ * body of the request:
+ *
+ *      POST /jobs              submit a job, answers 202 and its id
+ *      GET /jobs/ID            its state and current estimate; with
+ *                              "wait=MS", once it is done or MS
+ *                              milliseconds later
+ *      GET /jobs/ID/stream     one line of JSON every STREAM_MILLIS
+ *                              until it is done, for MAX_WAIT_MILLIS
+ *                              at most
+ *      DELETE /jobs/ID         cancel it
+ *
+ * The fields of a job are either "circles" for that many random
+ * circles drawn with "circleSeed" (0 by default), or one "circle"
+ * field of "x,y,radius" per circle; "size" of the field (1 by
+ * default); "cycles" (1000000 by default, or no bound with a target
+ * precision); "error" for a target precision, "relative" if it is
+ * relative to the estimate and "confidence"; and the "seed" of the
+ * points.
+ *
+ * The jobs wait in a queue of bounded length for one of as many
+ * running slots as there are workers, and run on a ScenarioScheduler
+ * with that many workers, each as a ParallelSimulator.  When the
+ * queue is full, a job is refused with 503 and a Retry-After header,
+ * so that clients back off instead of piling up.  Waits and streams
+ * only hold up to WAITERS of the threads answering requests, so that
+ * the others are left for the submissions: past that, a wait is
+ * answered at once and a stream is refused with 503.
+ *
+ * Small jobs without a target precision on the same circles are
+ * coalesced while they wait: they run as a single simulation of as
+ * many cycles as the largest of them, whose estimate they all get.
+ * Jobs with a seed are only coalesced with the same seed and number
+ * of cycles.  They go through a ResultCache instead: a job on the
+ * circles and seed of an earlier one carries on from its counts, and
+ * gets at least as many cycles as it asked for.
+ */
+public class EstimationServer implements AutoCloseable {
+        // Jobs of at most this number of cycles are coalesced.
+        private static final long COALESCE_CYCLES = 10_000_000;
+
+        // Bounds on the parameters of a job.
+        private static final int MAX_CIRCLES = 1_000_000;
+        private static final long MAX_CYCLES = 1L << 40;
+
+        // Longest wait of a request for a job to be done, and
+        // longest stream.
+        private static final long MAX_WAIT_MILLIS = 30_000;
+
+        // Time between two lines of a stream.
+        private static final long STREAM_MILLIS = 100;
+
+        // Number of jobs done that we still answer about.
+        private static final int MAX_FINISHED = 10_000;
+
+        // Number of threads answering requests, and how many of them
+        // waits and streams may hold at once.
+        private static final int HANDLERS = 32;
+        private static final int WAITERS = HANDLERS / 2;
+
+        // Number of scenarios the cache keeps in memory.
+        private static final int CACHED_SCENARIOS = 10_000;
+
+        private final HttpServer server;
+
+        private final ExecutorService handlers;
+
+        private final ScenarioScheduler scheduler;
+
+        private final int numWorkers;
+
+        private final ResultCache cache;
+
+        // The passes waiting to run.
+        private final BlockingQueue<Pass> queue;
+
+        // One running slot per worker.
+        private final Semaphore slots;
+
+        // The handlers that waits and streams may still hold.
+        private final Semaphore waiters = new Semaphore(WAITERS);
+
+        // Takes the passes from the queue once a slot is free.
+        private final Thread dispatcher;
+
+        // The passes in the queue that jobs can still join, by key.
+        // Guarded by "this", like the jobs of the passes.
+        private final Map<Key, Pass> joinable = new HashMap<>();
+
+        private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+        // Ids of the jobs done, oldest first.  Guarded by "this".
+        private final ArrayDeque<Long> finished = new ArrayDeque<>();
+
+        private final AtomicLong nextId = new AtomicLong(1);
+
+        public EstimationServer(int port,
+                                int numWorkers,
+                                int queueLength,
+                                ResultCache cache)
+                throws IOException
+        {
+                this.numWorkers = numWorkers;
+                this.cache = cache;
+                this.scheduler = new ScenarioScheduler(numWorkers);
+                this.queue = new ArrayBlockingQueue<>(queueLength);
+                this.slots = new Semaphore(numWorkers);
+                this.handlers = Executors.newFixedThreadPool(
+                        HANDLERS, ScenarioScheduler.daemonThreads("http-"));
+                this.server = HttpServer.create(new InetSocketAddress(port), 0);
+                server.createContext("/jobs", this::handle);
+                server.setExecutor(handlers);
+                server.start();
+
+                this.dispatcher = ScenarioScheduler.daemonThreads("dispatcher-")
+                        .newThread(this::dispatch);
+                dispatcher.start();
+        }
+
+        public EstimationServer(int port, int numWorkers, int queueLength)
+                throws IOException
+        {
+                this(port, numWorkers, queueLength,
+                     new ResultCache(CACHED_SCENARIOS));
+        }
+
+        public int port() { return server.getAddress().getPort(); }
+
+        @Override
+        public void close()
+        {
+                server.stop(0);
+                dispatcher.interrupt();
+                for (Job j: jobs.values())
+                        cancel(j);
+                handlers.shutdownNow();
+                scheduler.close();
+        }
+
+        // Run the passes of the queue as slots free up.
+        private void dispatch()
+        {
+                try {
+                        for (;;) {
+                                slots.acquire();
+                                Pass p = queue.take();
+                                boolean started = false;
+                                try {
+                                        started = start(p);
+                                } catch (RuntimeException e) {
+                                        fail(p, e);
+                                }
+                                if (!started)
+                                        slots.release();
+                        }
+                } catch (InterruptedException e) {
+                        // The server is closed.
+                }
+        }
+
+        // Start running a pass, unless all its jobs were cancelled
+        // while it waited.
+        private synchronized boolean start(Pass p)
+        {
+                long cycles = 0;
+
+                joinable.remove(p.key, p);
+                if (p.jobs.isEmpty())
+                        return false;
+                for (Job j: p.jobs)
+                        cycles = Math.max(cycles, j.cycles);
+
+                Job first = p.jobs.get(0);
+                SimulationOptions options = new SimulationOptions()
+                        .retention(SampleRetention.NONE)
+                        .threads(numWorkers)
+                        .precision(first.precision);
+                if (first.precision == null && first.confidence != null)
+                        options.confidence(first.confidence);
+                // Only the counts of seeded passes can be found again.
+                p.seeded = first.seed != null;
+                if (p.seeded) {
+                        options.seed(first.seed);
+                        p.simulator = cache.simulator(
+                                first.circles, cycles, first.size, options);
+                } else {
+                        p.simulator = new ParallelSimulator(
+                                first.circles, cycles, first.size, options);
+                }
+                p.scenario = scheduler.submit(p.simulator);
+                p.state = State.RUNNING;
+                p.scenario.future().whenComplete((s, e) -> finish(p, e));
+                return true;
+        }
+
+        // The slot and the waiting requests are released whatever
+        // happens: a cache that can't store the counts only loses
+        // them for later jobs.
+        private void finish(Pass p, Throwable failure)
+        {
+                try {
+                        if (failure == null && p.seeded)
+                                cache.store((ParallelSimulator)p.simulator);
+                } catch (RuntimeException e) {
+                        System.err.println("Cannot cache the counts: " + e);
+                } finally {
+                        slots.release();
+                        synchronized (this) {
+                                p.state = p.scenario.isCancelled() ?
+                                        State.CANCELLED :
+                                        failure != null ? State.FAILED : State.DONE;
+                                retire(p);
+                        }
+                        p.done.countDown();
+                }
+        }
+
+        // Give up on a pass that couldn't start, so that its jobs
+        // don't wait for it, and the dispatcher goes on with the
+        // others.
+        private void fail(Pass p, RuntimeException e)
+        {
+                System.err.println("Cannot start a pass: " + e);
+                synchronized (this) {
+                        joinable.remove(p.key, p);
+                        p.state = State.FAILED;
+                        retire(p);
+                }
+                p.done.countDown();
+        }
+
+        // Add the jobs of a pass to the ones done, and forget the
+        // oldest of these once there are too many.
+        private void retire(Pass p)
+        {
+                for (Job j: p.jobs)
+                        finished.add(j.id);
+                trim();
+        }
+
+        private void trim()
+        {
+                while (finished.size() > MAX_FINISHED)
+                        jobs.remove(finished.poll());
+        }
+
+        // Add a job to a pass, or refuse it if the queue is full.
+        private synchronized boolean submit(Job job)
+        {
+                Key key = job.coalescable() ? new Key(job) : null;
+                Pass p = key != null ? joinable.get(key) : null;
+
+                if (p == null) {
+                        p = new Pass(key);
+                        if (!queue.offer(p))
+                                return false;
+                        if (key != null)
+                                joinable.put(key, p);
+                }
+                p.jobs.add(job);
+                job.pass = p;
+                jobs.put(job.id, job);
+                return true;
+        }
+
+        // Cancel a job.  Its pass goes on as long as it has other
+        // jobs.
+        private void cancel(Job job)
+        {
+                Pass p = job.pass;
+
+                synchronized (this) {
+                        if (job.cancelled || p.state.isFinal())
+                                return;
+                        job.cancelled = true;
+                        p.jobs.remove(job);
+                        finished.add(job.id);
+                        trim();
+                        if (!p.jobs.isEmpty())
+                                return;
+                        if (p.state == State.QUEUED) {
+                                // The dispatcher may have taken it
+                                // already, but won't start it.
+                                joinable.remove(p.key, p);
+                                queue.remove(p);
+                                p.state = State.CANCELLED;
+                                p.done.countDown();
+                                return;
+                        }
+                }
+                p.scenario.cancel();
+        }
+
+        private void handle(HttpExchange ex) throws IOException
+        {
+                try {
+                        String path = ex.getRequestURI().getPath();
+                        String method = ex.getRequestMethod();
+                        String parts[] = path.split("/");
+
+                        // "", "jobs", id, "stream"
+                        if (parts.length == 2 && method.equals("POST")) {
+                                post(ex);
+                        } else if (parts.length == 3 || parts.length == 4) {
+                                Job job = jobs.get(parseId(parts[2]));
+                                if (job == null)
+                                        send(ex, 404, error("No job " + parts[2]));
+                                else if (parts.length == 4 && parts[3].equals("stream") &&
+                                         method.equals("GET"))
+                                        stream(ex, job);
+                                else if (parts.length == 4)
+                                        send(ex, 404, error("No resource " + path));
+                                else if (method.equals("GET"))
+                                        get(ex, job);
+                                else if (method.equals("DELETE")) {
+                                        cancel(job);
+                                        send(ex, 200, status(job));
+                                } else
+                                        send(ex, 405, error("Method not allowed"));
+                        } else {
+                                send(ex, 404, error("No resource " + path));
+                        }
+                } catch (IllegalArgumentException e) {
+                        send(ex, 400, error(e.getMessage()));
+                } catch (RuntimeException e) {
+                        send(ex, 500, error(String.valueOf(e)));
+                }
+                // An IOException goes up to the HttpServer instead,
+                // which drops the connection without ending the
+                // response, so that the client sees it cut short.
+                ex.close();
+        }
+
+        private static long parseId(String s)
+        {
+                try {
+                        return Long.parseLong(s);
+                } catch (NumberFormatException e) {
+                        return -1;
+                }
+        }
+
+        private void post(HttpExchange ex) throws IOException
+        {
+                Map<String, List<String>> params = params(ex);
+                Job job = new Job(nextId.getAndIncrement(), params);
+
+                if (!submit(job)) {
+                        ex.getResponseHeaders().set("Retry-After", "1");
+                        send(ex, 503, error("Too many jobs waiting"));
+                        return;
+                }
+                ex.getResponseHeaders().set("Location", "/jobs/" + job.id);
+                send(ex, 202, status(job));
+        }
+
+        private void get(HttpExchange ex, Job job) throws IOException
+        {
+                String wait = first(params(ex), "wait");
+                long millis = 0;
+
+                if (wait != null) {
+                        try {
+                                millis = Long.parseLong(wait);
+                        } catch (NumberFormatException e) {
+                                millis = -1;
+                        }
+                        if (millis < 0)
+                                throw new IllegalArgumentException(
+                                        "Invalid wait: " + wait);
+                        millis = Math.min(MAX_WAIT_MILLIS, millis);
+                }
+
+                // Without a free waiter, the client gets the current
+                // estimate and asks again.
+                if (millis > 0 && waiters.tryAcquire()) {
+                        try {
+                                await(job.pass, millis);
+                        } finally {
+                                waiters.release();
+                        }
+                }
+                send(ex, 200, status(job));
+        }
+
+        // Write the status of the job every STREAM_MILLIS until it is
+        // done, or for MAX_WAIT_MILLIS.
+        private void stream(HttpExchange ex, Job job) throws IOException
+        {
+                if (!waiters.tryAcquire()) {
+                        ex.getResponseHeaders().set("Retry-After", "1");
+                        send(ex, 503, error("Too many requests waiting"));
+                        return;
+                }
+                try {
+                        long end = System.nanoTime() +
+                                TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS);
+                        ex.getResponseHeaders().set("Content-Type",
+                                                    "application/x-ndjson");
+                        ex.sendResponseHeaders(200, 0);
+                        OutputStream out = ex.getResponseBody();
+                        for (;;) {
+                                boolean last = job.state().isFinal() ||
+                                        System.nanoTime() - end >= 0;
+                                out.write((status(job) + "\n")
+                                          .getBytes(StandardCharsets.UTF_8));
+                                out.flush();
+                                if (last)
+                                        break;
+                                await(job.pass, STREAM_MILLIS);
+                        }
+                } finally {
+                        waiters.release();
+                }
+        }
+
+        // Wait up to "millis" milliseconds for a pass to be done.  The
+        // handlers are only interrupted when the server is closed,
+        // and the request is then dropped.
+        private static void await(Pass p, long millis)
+                throws InterruptedIOException
+        {
+                try {
+                        p.done.await(millis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Server closed");
+                }
+        }
+
+        private String status(Job job)
+        {
+                State state = job.state();
+                Simulator sim = job.pass.simulator;
+                StringBuilder sb = new StringBuilder();
+                int coalesced;
+
+                synchronized (this) {
+                        coalesced = job.pass.jobs.size();
+                }
+
+                sb.append("{\"id\": ").append(job.id)
+                        .append(", \"state\": \"")
+                        .append(state.name().toLowerCase(Locale.ROOT))
+                        .append("\", \"coalesced\": ").append(coalesced);
+                if (sim != null)
+                        sb.append(", \"cycles\": ").append(sim.currentCycle())
+                                .append(", \"num_cycles\": ").append(sim.numCycles())
+                                .append(", \"estimate\": ").append(number(sim.currentEstim()))
+                                .append(", \"half_width\": ")
+                                .append(number(sim.currentHalfWidth()));
+                return sb.append('}').toString();
+        }
+
+        private static String number(double d)
+        {
+                return Double.isNaN(d) || Double.isInfinite(d) ?
+                        "null" : Double.toString(d);
+        }
+
+        private static String error(String message)
+        {
+                return "{\"error\": \"" +
+                        String.valueOf(message).replace("\\", "\\\\")
+                        .replace("\"", "\\\"") + "\"}";
+        }
+
+        private static void send(HttpExchange ex, int code, String json)
+                throws IOException
+        {
+                byte body[] = (json + "\n").getBytes(StandardCharsets.UTF_8);
+
+                ex.getResponseHeaders().set("Content-Type", "application/json");
+                ex.sendResponseHeaders(code, body.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                        out.write(body);
+                }
+        }
+
+        // Return the form fields of the query and of the body of the
+        // request.
+        private static Map<String, List<String>> params(HttpExchange ex)
+                throws IOException
+        {
+                Map<String, List<String>> params = new HashMap<>();
+
+                parseForm(ex.getRequestURI().getRawQuery(), params);
+                try (InputStream in = ex.getRequestBody()) {
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        in.transferTo(body);
+                        parseForm(body.toString(StandardCharsets.UTF_8), params);
+                }
+                return params;
+        }
+
+        private static void parseForm(String form,
+                                      Map<String, List<String>> params)
+        {
+                if (form == null || form.isEmpty())
+                        return;
+                for (String field: form.split("&")) {
+                        int eq = field.indexOf('=');
+                        String name = eq < 0 ? field : field.substring(0, eq);
+                        String value = eq < 0 ? "" : field.substring(eq + 1);
+                        params.computeIfAbsent(
+                                URLDecoder.decode(name, StandardCharsets.UTF_8),
+                                k -> new ArrayList<>())
+                                .add(URLDecoder.decode(value, StandardCharsets.UTF_8));
+                }
+        }
+
+        private static String first(Map<String, List<String>> params,
+                                    String name)
+        {
+                List<String> values = params.get(name);
+                return values == null ? null : values.get(0);
+        }
+
+        private enum State {
+                QUEUED, RUNNING, DONE, CANCELLED, FAILED;
+
+                boolean isFinal() { return ordinal() >= DONE.ordinal(); }
+        }
+
+        /*
+         * A job, as submitted.
+         */
+        private static class Job {
+                final long id;
+                final Circle circles[];
+                final float size;
+                final long cycles;
+                final Precision precision;
+                final Double confidence;
+                final Long seed;
+
+                // The pass the job runs in, set once it is queued.
+                volatile Pass pass;
+
+                // Set under the lock of the server.
+                volatile boolean cancelled;
+
+                Job(long id, Map<String, List<String>> params)
+                {
+                        this.id = id;
+                        try {
+                                String s = first(params, "seed");
+                                seed = s != null ? Long.valueOf(s) : null;
+                                s = first(params, "size");
+                                size = s != null ? Float.parseFloat(s) : 1;
+                                if (!(size > 0 && size < Float.POSITIVE_INFINITY))
+                                        throw new IllegalArgumentException(
+                                                "Invalid size: " + size);
+                                // The options check their values only
+                                // once the pass starts, which is too
+                                // late to refuse the job.
+                                s = first(params, "confidence");
+                                confidence = s != null ? Double.valueOf(s) : null;
+                                if (confidence != null &&
+                                    !(confidence > 0 && confidence < 1))
+                                        throw new IllegalArgumentException(
+                                                "Invalid confidence: " + confidence);
+                                s = first(params, "error");
+                                precision = s == null ? null :
+                                        "true".equals(first(params, "relative")) ?
+                                        Precision.relative(Double.parseDouble(s),
+                                                           confidenceOr95()) :
+                                        Precision.absolute(Double.parseDouble(s),
+                                                           confidenceOr95());
+                                // A job with a target precision runs
+                                // until it reaches it by default.
+                                s = first(params, "cycles");
+                                cycles = s != null ? Long.parseLong(s) :
+                                        precision != null ? MAX_CYCLES : 1_000_000;
+                                circles = circles(params);
+                        } catch (NumberFormatException e) {
+                                throw new IllegalArgumentException(
+                                        "Invalid number: " + e.getMessage());
+                        }
+                        if (cycles < 1 || cycles > MAX_CYCLES)
+                                throw new IllegalArgumentException(
+                                        "Invalid number of cycles: " + cycles);
+                }
+
+                private double confidenceOr95()
+                {
+                        return confidence != null ? confidence : 0.95;
+                }
+
+                private Circle[] circles(Map<String, List<String>> params)
+                {
+                        List<String> list = params.get("circle");
+                        String num = first(params, "circles");
+
+                        if (list != null) {
+                                if (list.size() > MAX_CIRCLES)
+                                        throw new IllegalArgumentException(
+                                                "Too many circles");
+                                Circle c[] = new Circle[list.size()];
+                                for (int i = 0; i < c.length; i++) {
+                                        String xyr[] = list.get(i).split(",");
+                                        if (xyr.length != 3)
+                                                throw new IllegalArgumentException(
+                                                        "Invalid circle: " + list.get(i));
+                                        float x = Float.parseFloat(xyr[0]);
+                                        float y = Float.parseFloat(xyr[1]);
+                                        float r = Float.parseFloat(xyr[2]);
+                                        if (!Float.isFinite(x) || !Float.isFinite(y) ||
+                                            !(r >= 0 && r < Float.POSITIVE_INFINITY))
+                                                throw new IllegalArgumentException(
+                                                        "Invalid circle: " + list.get(i));
+                                        c[i] = new Circle(x, y, r);
+                                }
+                                return c;
+                        }
+                        if (num == null)
+                                throw new IllegalArgumentException(
+                                        "Missing \"circles\" or \"circle\"");
+                        int n = Integer.parseInt(num);
+                        if (n < 0 || n > MAX_CIRCLES)
+                                throw new IllegalArgumentException(
+                                        "Invalid number of circles: " + n);
+                        String s = first(params, "circleSeed");
+                        return Experiment.randCircles(
+                                n, size, size, s != null ? Long.parseLong(s) : 0);
+                }
+
+                boolean coalescable()
+                {
+                        return precision == null && cycles <= COALESCE_CYCLES;
+                }
+
+                State state()
+                {
+                        return cancelled ? State.CANCELLED : pass.state;
+                }
+        }
+
+        /*
+         * What coalesced jobs have in common.
+         */
+        private static class Key {
+                private final float data[];
+                private final Long seed;
+                private final long cycles;
+                private final Double confidence;
+
+                Key(Job job)
+                {
+                        data = new float[3 * job.circles.length + 1];
+                        for (int i = 0; i < job.circles.length; i++) {
+                                data[3*i] = job.circles[i].center().x();
+                                data[3*i + 1] = job.circles[i].center().y();
+                                data[3*i + 2] = job.circles[i].radius();
+                        }
+                        data[data.length - 1] = job.size;
+                        seed = job.seed;
+                        // Without a seed, the number of cycles
+                        // doesn't matter, since the pass runs the
+                        // largest one.
+                        cycles = seed != null ? job.cycles : 0;
+                        confidence = job.confidence;
+                }
+
+                @Override
+                public boolean equals(Object o)
+                {
+                        if (!(o instanceof Key))
+                                return false;
+                        Key k = (Key)o;
+                        return Arrays.equals(data, k.data) &&
+                                Objects.equals(seed, k.seed) &&
+                                cycles == k.cycles &&
+                                Objects.equals(confidence, k.confidence);
+                }
+
+                @Override
+                public int hashCode()
+                {
+                        return Arrays.hashCode(data) * 31 +
+                                Objects.hash(seed, cycles, confidence);
+                }
+        }
+
+        /*
+         * A simulation run for one or more jobs.
+         */
+        private static class Pass {
+                final Key key;
+
+                // The jobs not cancelled.  Guarded by the server.
+                final List<Job> jobs = new ArrayList<>();
+
+                volatile State state = State.QUEUED;
+
+                // Set once the pass starts.
+                volatile Simulator simulator;
+                volatile boolean seeded;
+                volatile Scenario scenario;
+
+                // Counted down once the pass is done.
+                final CountDownLatch done = new CountDownLatch(1);
+
+                Pass(Key key)
+                {
+                        this.key = key;
+                }
+        }
+
+        public static void main(String[] args) throws IOException
+        {
+                int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+                int workers = args.length > 1 ?
+                        Integer.parseInt(args[1]) :
+                        Runtime.getRuntime().availableProcessors();
+                int queue = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+                ResultCache cache = new ResultCache(
+                        CACHED_SCENARIOS,
+                        args.length > 3 ? Path.of(args[3]) : null);
+
+                EstimationServer s = new EstimationServer(
+                        port, workers, queue, cache);
+                System.err.println("Listening on port " + s.port());
+        }
+}
@@ -0,0 +1,172 @@
+package montecarlo1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Collects the co-moments an experiment needs to reduce the variance
+ * of its estimate, see Moments.
+ *
+ * Two techniques can be combined:
+ *
+ *  - A control variate: the number of circles lying entirely in the
+ *    field that contain the point.  Its mean is the sum of their
+ *    areas over the area of the field, and unless the circles
+ *    overlap a lot, it is strongly correlated with the point falling
+ *    inside their union.
+ *
+ *  - Antithetic pairs, from an AntitheticSource: each point at an
+ *    even index and the next one form a unit.
+ *
+ * Only the thread running the experiment uses an estimator.
+ */
+public class Estimator {
+        // Is the source of the experiment an AntitheticSource?
+        private final boolean antithetic;
+
+        // The circles of the control variate, or null if there is
+        // none.
+        private final CircleGrid controls;
+
+        // Mean of the control variate, or NaN if there is none.
+        private final double control;
+
+        // The sums of Moments.
+        private long n, nn, y, c, ny, nc, yy, cc, yc;
+
+        // Index of the first point of a pair whose second point is
+        // yet to come, or -1, whether it fell inside the circles, and
+        // its control variate.
+        private long pending = -1;
+        private int pendingY;
+        private int pendingC;
+
+        // Build an estimator for points drawn uniformly in the given
+        // field.  The circles of the control variate must lie inside
+        // it, and there is none if they are null.
+        public Estimator(Circle[] controls,
+                         float minX,
+                         float minY,
+                         float width,
+                         float height,
+                         boolean antithetic)
+        {
+                this.antithetic = antithetic;
+                if (controls != null && controls.length > 0) {
+                        double area = 0;
+                        for (Circle c: controls)
+                                area += Math.PI * c.radius() * c.radius();
+                        // Preparing the circles would drop some of
+                        // them, and change the mean of the count.
+                        this.controls = new CircleGrid(
+                                controls, minX, minY, width, height, false);
+                        this.control = area / ((double)width * height);
+                } else {
+                        this.controls = null;
+                        this.control = Double.NaN;
+                }
+        }
+
+        // Return the estimator the given options ask for, or null if
+        // they ask for none.  There is no control circle when the
+        // points are drawn from strata, since we don't know then how
+        // likely they are to fall in any circle.
+        public static Estimator create(Circle[] circles,
+                                       float minX,
+                                       float minY,
+                                       float width,
+                                       float height,
+                                       SimulationOptions options)
+        {
+                if (!options.controlVariate() && !options.antithetic())
+                        return null;
+
+                List<Circle> controls = new ArrayList<>();
+                if (options.controlVariate() && options.strata() == 0)
+                        for (Circle c: circles) {
+                                float x = c.center().x();
+                                float y = c.center().y();
+                                float r = c.radius();
+                                if (x - r >= minX && x + r <= minX + width &&
+                                    y - r >= minY && y + r <= minY + height)
+                                        controls.add(c);
+                        }
+                return new Estimator(controls.toArray(new Circle[0]),
+                                     minX, minY, width, height,
+                                     options.antithetic());
+        }
+
+        // Count the given block of points, the first of which has
+        // the given index in the sequence of the source.
+        public void add(float xs[],
+                        float ys[],
+                        boolean inside[],
+                        long first,
+                        int num)
+        {
+                for (int i = 0; i < num; i++) {
+                        int pc = controls != null ?
+                                controls.count(xs[i], ys[i]) : 0;
+                        int py = inside[i] ? 1 : 0;
+                        long index = first + i;
+
+                        if (!antithetic) {
+                                unit(1, py, pc);
+                        } else if ((index & 1) == 0) {
+                                flush();
+                                pending = index;
+                                pendingY = py;
+                                pendingC = pc;
+                        } else if (pending == index - 1) {
+                                pending = -1;
+                                unit(2, pendingY + py, pendingC + pc);
+                        } else {
+                                unit(1, py, pc);
+                        }
+                }
+        }
+
+        // Count the first point of a pair whose second point won't
+        // come, as a unit of its own.
+        public void flush()
+        {
+                if (pending >= 0) {
+                        pending = -1;
+                        unit(1, pendingY, pendingC);
+                }
+        }
+
+        private void unit(int un, int uy, int uc)
+        {
+                n += un;
+                nn += un*un;
+                y += uy;
+                c += uc;
+                ny += un*uy;
+                nc += un*uc;
+                yy += uy*uy;
+                cc += uc*uc;
+                yc += uy*uc;
+        }
+
+        // Return the moments counted so far.
+        public Moments moments()
+        {
+                return new Moments(control, n, nn, y, c, ny, nc, yy, cc, yc);
+        }
+
+        // Take the moments counted from a checkpoint.
+        public void restore(Moments m)
+        {
+                pending = -1;
+                n = m.n;
+                nn = m.nn;
+                y = m.y;
+                c = m.c;
+                ny = m.ny;
+                nc = m.nc;
+                yy = m.yy;
+                cc = m.cc;
+                yc = m.yc;
+        }
+}
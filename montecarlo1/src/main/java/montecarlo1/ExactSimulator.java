@@ -0,0 +1,380 @@
+package montecarlo1;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Computes the area of the union of the circles inside the field
+ * exactly, instead of estimating it from random points.
+ *
+ * By Green's theorem, the area of a region is the integral of
+ * (x dy - y dx) / 2 along its boundary, counterclockwise.  The
+ * boundary of the union of the circles inside the field is made of
+ * the arcs of the circles that lie inside the field but outside all
+ * the other circles, and of the parts of the sides of the field that
+ * lie inside a circle.  For each circle, the other circles and the
+ * sides of the field cover intervals of angles; we sort their ends
+ * and integrate along the gaps between them, which is O(n log n) per
+ * circle and O(n^2 log n) in all.  Since the field starts at (0, 0),
+ * only its right and top sides contribute.
+ *
+ * The circles are split in blocks, each integrated by one thread,
+ * and the integrals of the blocks are added in order once they are
+ * all done, so the result doesn't depend on the number of threads.
+ * A "cycle" of this simulation is the integration along a circle.
+ */
+public class ExactSimulator implements Simulator {
+        // Number of circles integrated by a call to runBatch().
+        private static final int BLOCK_SIZE = 64;
+
+        private static final double TWO_PI = 2 * Math.PI;
+
+        private final Circle circles[];
+
+        private final float size;
+
+        private final int threadNumber;
+
+        // The circles sorted by abscissa of their center, so that
+        // those close to a circle can be found by a binary search.
+        private final double cx[];
+        private final double cy[];
+        private final double r[];
+
+        // Largest radius of a circle.
+        private final double maxRadius;
+
+        // The integral along the circles of each block.
+        private final double partial[];
+
+        // Next block no thread took yet, and number of circles whose
+        // integral is done.
+        private final AtomicInteger nextBlock = new AtomicInteger();
+        private final AtomicInteger integrated = new AtomicInteger();
+
+        // The area of the union, or NaN until all the blocks are
+        // done.
+        private volatile double area = Double.NaN;
+
+        private final RunControl control = new RunControl();
+
+        public ExactSimulator(Circle[] circles,
+                              float size,
+                              SimulationOptions options)
+        {
+                this.circles = circles;
+                this.size = size;
+                this.threadNumber = options.threads();
+
+                Circle sorted[] = circles.clone();
+                Arrays.sort(sorted,
+                            Comparator.comparingDouble(c -> c.center().x()));
+                int n = sorted.length;
+                double maxRadius = 0;
+                cx = new double[n];
+                cy = new double[n];
+                r = new double[n];
+                for (int i = 0; i < n; i++) {
+                        cx[i] = sorted[i].center().x();
+                        cy[i] = sorted[i].center().y();
+                        r[i] = sorted[i].radius();
+                        maxRadius = Math.max(maxRadius, r[i]);
+                }
+                this.maxRadius = maxRadius;
+                this.partial = new double[(n + BLOCK_SIZE - 1) / BLOCK_SIZE];
+                if (n == 0)
+                        area = 0;
+        }
+
+        public ExactSimulator(int numCircles,
+                              float size,
+                              SimulationOptions options)
+        {
+                this(Experiment.randCircles(
+                             numCircles, size, size, options.effectiveSeed()),
+                     size,
+                     options);
+        }
+
+        // Return the area of the union of the circles inside the
+        // square field [0, size] x [0, size].
+        public static double area(Circle[] circles, float size)
+        {
+                ExactSimulator sim = new ExactSimulator(
+                        circles, size, new SimulationOptions());
+
+                sim.run();
+                return sim.currentEstim();
+        }
+
+        public void run()
+        {
+                ExecutorService exec = Executors.newFixedThreadPool(
+                        threadNumber, ScenarioScheduler.daemonThreads("exact-"));
+
+                for (int i = 0; i < threadNumber; i++)
+                        exec.submit(() -> {
+                                        while (runBatch())
+                                                ;
+                                });
+
+                exec.shutdown();
+                try {
+                        exec.awaitTermination(
+                                Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                        // The threads stop at their next block.
+                        control.cancel();
+                        Thread.currentThread().interrupt();
+                }
+        }
+
+        // Integrate along the circles of the next block.  The thread
+        // that completes the last block adds up the area.
+        @Override
+        public boolean runBatch()
+        {
+                if (!control.proceed())
+                        return false;
+
+                int b = nextBlock.getAndIncrement();
+                if (b >= partial.length)
+                        return false;
+
+                int from = b * BLOCK_SIZE;
+                int to = Math.min(from + BLOCK_SIZE, cx.length);
+                double sum = 0;
+                for (int i = from; i < to; i++)
+                        sum += integrate(i);
+                partial[b] = sum;
+
+                // The increment publishes the partial integral to the
+                // thread that sees the last one.
+                if (integrated.addAndGet(to - from) == cx.length) {
+                        double total = sides();
+                        for (double p: partial)
+                                total += p;
+                        area = total;
+                }
+                return true;
+        }
+
+        // Return the integral along the parts of circle i that lie
+        // inside the field and outside all the other circles.
+        private double integrate(int i)
+        {
+                double x = cx[i], y = cy[i], ri = r[i];
+                if (!(ri > 0))
+                        return 0;
+
+                // Ends of the intervals of angles covered by the
+                // other circles or outside of the field.
+                int lo = lowerBound(x - ri - maxRadius);
+                int hi = upperBound(x + ri + maxRadius);
+                double starts[] = new double[2 * (hi - lo) + 8];
+                double ends[] = new double[starts.length];
+                int n = 0;
+
+                // The sides of the field, as the distance from the
+                // center to the side and the direction of the side.
+                double sides[][] = {
+                        { x, Math.PI }, { size - x, 0 },
+                        { y, 1.5 * Math.PI }, { size - y, 0.5 * Math.PI },
+                };
+                for (double side[]: sides) {
+                        if (side[0] >= ri)
+                                continue;
+                        if (side[0] <= -ri)
+                                return 0;
+                        n = cover(starts, ends, n, side[1], Math.acos(side[0] / ri));
+                        if (n < 0)
+                                return 0;
+                }
+
+                for (int j = lo; j < hi; j++) {
+                        if (j == i)
+                                continue;
+                        double dx = cx[j] - x;
+                        double dy = cy[j] - y;
+                        double rj = r[j];
+                        double d = Math.sqrt(dx*dx + dy*dy);
+
+                        if (d >= ri + rj)
+                                continue;
+                        // Among equal circles, only the first one
+                        // counts.
+                        if (d + ri < rj || (d + ri == rj && (d > 0 || j < i)))
+                                return 0;
+                        if (d + rj <= ri)
+                                continue;
+                        double cos = (ri*ri + d*d - rj*rj) / (2 * ri * d);
+                        n = cover(starts, ends, n, Math.atan2(dy, dx),
+                                  Math.acos(Math.max(-1, Math.min(1, cos))));
+                        if (n < 0)
+                                return 0;
+                }
+
+                // Integrate along the gaps between the covered
+                // intervals.
+                Arrays.sort(starts, 0, n);
+                Arrays.sort(ends, 0, n);
+                double sum = 0;
+                double gap = 0;
+                int depth = 0;
+                for (int s = 0, e = 0; e < n; ) {
+                        if (s < n && starts[s] <= ends[e]) {
+                                if (depth++ == 0)
+                                        sum += arc(x, y, ri, gap, starts[s]);
+                                s++;
+                        } else {
+                                if (--depth == 0)
+                                        gap = ends[e];
+                                e++;
+                        }
+                }
+                return sum + arc(x, y, ri, gap, TWO_PI);
+        }
+
+        // Add the interval of angles (center - half, center + half)
+        // to the covered ones, split in two if it wraps around 0,
+        // and return their new number, or -1 if it covers the whole
+        // circle.
+        private static int cover(double starts[],
+                                 double ends[],
+                                 int n,
+                                 double center,
+                                 double half)
+        {
+                if (half >= Math.PI)
+                        return -1;
+                double start = center - half;
+                start -= TWO_PI * Math.floor(start / TWO_PI);
+                double end = start + 2 * half;
+
+                if (end > TWO_PI) {
+                        starts[n] = 0;
+                        ends[n++] = end - TWO_PI;
+                        end = TWO_PI;
+                }
+                starts[n] = start;
+                ends[n++] = end;
+                return n;
+        }
+
+        // Return the integral of (x dy - y dx) / 2 along the circle
+        // from angle a to angle b.
+        private static double arc(double x, double y, double r, double a, double b)
+        {
+                return 0.5 * (r * r * (b - a) +
+                              x * r * (Math.sin(b) - Math.sin(a)) -
+                              y * r * (Math.cos(b) - Math.cos(a)));
+        }
+
+        // Return the integral along the right and top sides of the
+        // field, that is size / 2 times the length of each of them
+        // inside the circles.
+        private double sides()
+        {
+                return 0.5 * size * (covered(cx, cy) + covered(cy, cx));
+        }
+
+        // Return the length of the side {u = size} inside the
+        // circles, where u and v are the coordinates of their
+        // centers across and along the side.
+        private double covered(double u[], double v[])
+        {
+                int n = 0;
+                double starts[] = new double[u.length];
+                double ends[] = new double[u.length];
+
+                for (int i = 0; i < u.length; i++) {
+                        double d = size - u[i];
+                        if (Math.abs(d) >= r[i])
+                                continue;
+                        double h = Math.sqrt(r[i]*r[i] - d*d);
+                        starts[n] = Math.max(0, v[i] - h);
+                        ends[n] = Math.min(size, v[i] + h);
+                        if (starts[n] < ends[n])
+                                n++;
+                }
+
+                Arrays.sort(starts, 0, n);
+                Arrays.sort(ends, 0, n);
+                double length = 0;
+                double from = 0;
+                int depth = 0;
+                for (int s = 0, e = 0; e < n; ) {
+                        if (s < n && starts[s] <= ends[e]) {
+                                if (depth++ == 0)
+                                        from = starts[s];
+                                s++;
+                        } else {
+                                if (--depth == 0)
+                                        length += ends[e] - from;
+                                e++;
+                        }
+                }
+                return length;
+        }
+
+        // Return the index of the first circle whose center has an
+        // abscissa of at least x.
+        private int lowerBound(double x)
+        {
+                int lo = 0, hi = cx.length;
+
+                while (lo < hi) {
+                        int mid = (lo + hi) >>> 1;
+                        if (cx[mid] < x)
+                                lo = mid + 1;
+                        else
+                                hi = mid;
+                }
+                return lo;
+        }
+
+        // Return the index of the first circle whose center has an
+        // abscissa greater than x.
+        private int upperBound(double x)
+        {
+                int lo = 0, hi = cx.length;
+
+                while (lo < hi) {
+                        int mid = (lo + hi) >>> 1;
+                        if (cx[mid] <= x)
+                                lo = mid + 1;
+                        else
+                                hi = mid;
+                }
+                return lo;
+        }
+
+        @Override
+        public int parallelism() { return threadNumber; }
+
+        @Override
+        public RunControl control() { return control; }
+
+        public double currentEstim() { return area; }
+
+        // The area is exact, up to rounding.
+        public double currentHalfWidth()
+        {
+                return Double.isNaN(area) ? Double.NaN : 0;
+        }
+
+        @Override
+        public SampleCursor iterator() { return SampleCursor.EMPTY; }
+
+        @Override
+        public void histogram(HitHistogram into) { into.clear(); }
+
+        public float size() { return size; }
+        public long numCycles() { return cx.length; }
+        public long currentCycle() { return integrated.get(); }
+        public Circle[] circles() { return circles; }
+}
@@ -0,0 +1,510 @@
+package montecarlo1;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+import java.lang.Math;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+public class Experiment {
+        // Number of points kept by an experiment whose retention
+        // policy is SampleRetention.RESERVOIR.
+        public static final int RESERVOIR_SIZE = 1 << 16;
+
+        // Number of random points we generate before testing them
+        // all at once against the circles.
+        private static final int BLOCK_SIZE = 256;
+
+        // Number of cycles after which a long run publishes its
+        // progress, and checks whether it is paused or cancelled.
+        private static final long PUBLISH_INTERVAL = 1 << 14;
+
+        private static final VarHandle PROGRESS;
+
+        static {
+                try {
+                        PROGRESS = MethodHandles.lookup().findVarHandle(
+                                Experiment.class, "progress", Progress.class);
+                } catch (ReflectiveOperationException e) {
+                        throw new ExceptionInInitializerError(e);
+                }
+        }
+
+        // The circles that delimit the area we want to compute.
+        private Circle circles[];
+
+        // Tests the random points against the circles.
+        private final ContainmentKernel kernel;
+
+        // Where the random points come from.
+        private final SampleSource source;
+
+        // The cells of the field the random points are restricted
+        // to, or null to draw them in the whole field.
+        private final Strata strata;
+
+        // The block of random points being tested.
+        private final float blockX[];
+        private final float blockY[];
+        private final boolean blockInside[];
+
+        // Width of the field inside which the random points are
+        // generated.
+        private float width;
+
+        // Height of the field inside which the random points are
+        // generated.
+        private float height;        
+
+        // The abscissa of the points inside the field we run the
+        // experiment on lies between minX and minX + width.
+        private float minX;
+
+        // The number of cycles we want to run.
+        private final long numCycles;
+
+        // The current cycle we're in.  Only the thread running the
+        // experiment reads and writes it, other threads go through
+        // "progress".
+        private long currentCycle;
+
+        // Number of random points that falls inside the area we want
+        // to compute.  Same as above.
+        private long numInside;
+
+        // Index in the sequence of the source of the next point.
+        // Same as above.
+        private long position;
+
+        // The last values of currentCycle, numInside and position
+        // published for other threads.  It is written with release semantics
+        // after the points it counts are stored, and read with
+        // acquire semantics, so a reader sees these points too.
+        @SuppressWarnings("unused")
+        private Progress progress = Progress.NONE;
+
+        // Which of the random points we keep.
+        private final SampleRetention retention;
+
+        // The random points generated during the simulation, if we
+        // keep all of them, on the heap or outside of it.
+        private SampleStore samples;
+
+        // A random subset of the points generated during the
+        // simulation, if we only keep some of them.
+        private SampleReservoir reservoir;
+
+        // Index of the first cycle whose point is kept.  The cycles
+        // taken from a checkpoint by restore() have none.
+        private volatile long keptFrom;
+
+        // Counts the random points per pixel for display, or null.
+        private final HitHistogram histogram;
+
+        // Collects what variance reduction needs, or null.
+        private final Estimator estimator;
+
+        // Build an experiment that tests its random points with the
+        // given kernel.  The kernel must cover the field of the
+        // experiment, and may be shared with other experiments, as
+        // may the strata.  The source, the histogram and the
+        // estimator, which may be null, must not be shared.  The points kept outside the heap
+        // go to files in "sampleDirectory" if it isn't null.
+        public Experiment(Circle[] circles,
+                          ContainmentKernel kernel,
+                          SampleSource source,
+                          Strata strata,
+                          long numCycles,
+                          float minX,
+                          float width,
+                          float height,
+                          SampleRetention retention,
+                          Path sampleDirectory,
+                          HitHistogram histogram,
+                          Estimator estimator)
+        {
+                this.numCycles = numCycles;
+                this.minX = minX;
+                this.width = width;
+                this.height = height;
+                this.retention = retention;
+                this.blockX = new float[BLOCK_SIZE];
+                this.blockY = new float[BLOCK_SIZE];
+                this.blockInside = new boolean[BLOCK_SIZE];
+                switch (retention) {
+                case ALL:
+                        this.samples = new HeapSampleStore(numCycles);
+                        break;
+                case OFF_HEAP:
+                        this.samples = new OffHeapSampleStore(
+                                numCycles, sampleDirectory);
+                        break;
+                case RESERVOIR:
+                        this.reservoir = new SampleReservoir(
+                                (int)Math.min(numCycles, RESERVOIR_SIZE));
+                        break;
+                case NONE:
+                        break;
+                }
+                this.circles = circles;
+                this.kernel = kernel;
+                this.source = source;
+                this.strata = strata;
+                this.histogram = histogram;
+                this.estimator = estimator;
+        }
+
+        public Experiment(Circle[] circles,
+                          long numCycles,
+                          float minX,
+                          float width,
+                          float height,
+                          SimulationOptions options)
+        {
+                // Circles that don't overlap the field don't appear
+                // in any cell of the grid, so we don't need to filter
+                // them out.
+                this(circles,
+                     options.containment().kernel(
+                             circles, minX, 0, width, height),
+                     options.newSource(options.effectiveSeed()),
+                     options.strata() > 0 ?
+                             new Strata(circles, minX, 0, width, height,
+                                        options.strata()) :
+                             null,
+                     numCycles,
+                     minX,
+                     width,
+                     height,
+                     options.retention(),
+                     options.sampleDirectory(),
+                     // The field of an experiment is always as tall
+                     // as the whole square.
+                     options.histogram() > 0 ?
+                             new HitHistogram(options.histogram(), height) :
+                             null,
+                     Estimator.create(circles, minX, 0, width, height, options));
+        }
+
+        public Experiment(Circle[] circles,
+                          long numCycles,
+                          float minX,
+                          float width,
+                          float height)
+        {
+                this(circles,
+                     numCycles,
+                     minX,
+                     width,
+                     height,
+                     new SimulationOptions());
+        }
+
+        // Return "num" random circles.
+        //
+        // The center of each circle lies in the rectangle of the
+        // given width and height.
+        public static Circle[] randCircles(int num, float width, float height)
+        {
+                return randCircles(
+                        ThreadLocalRandom.current(), num, width, height);
+        }
+
+        // Same as above, but always return the same circles for a
+        // given seed.
+        public static Circle[] randCircles(int num,
+                                           float width,
+                                           float height,
+                                           long seed)
+        {
+                return randCircles(
+                        new SplittableRandom(seed), num, width, height);
+        }
+
+        private static Circle[] randCircles(RandomGenerator rnd,
+                                            int num,
+                                            float width,
+                                            float height)
+        {
+                Circle[] c = new Circle[num];
+                
+                // Here's how we compute the maximum radius "max" of
+                // the circles.  Even if none of them overlap, we want
+                // the total area to not exceed half the rectangle on
+                // average.  Since the average area of a random circle
+                // is pi * (max/2)^2.  Hence we want the inequality:
+                //      num * pi * (max/2)^2 <= width * height / 2
+                float max = (float)Math.sqrt(2*width*height/(Math.PI*num));
+                for (int i = 0; i < num; i++)
+                        c[i] = Circle.random(rnd, width, height, max);
+
+                return c;                
+        }
+
+        public Experiment(int numCircles,
+                          long numCycles,
+                          float minX,
+                          float width,
+                          float height)
+        {
+                this(randCircles(numCircles, width, height),
+                     numCycles,
+                     minX,
+                     width,
+                     height);                
+        }
+
+        // Take the next random points from the given index of the
+        // sequence of the source.
+        public void seek(long index)
+        {
+                seek(index, 0);
+        }
+
+        // Same as above, and publish the next "cycles" points of the
+        // sequence as pending, like a run does when it starts.
+        public void seek(long index, long cycles)
+        {
+                source.seek(index);
+                position = index;
+                PROGRESS.setRelease(
+                        this,
+                        new Progress(currentCycle, numInside, index,
+                                     index + Math.min(
+                                             cycles, numCycles - currentCycle),
+                                     moments()));
+        }
+
+        // Take the counters of the experiment from a checkpoint, as
+        // if it had already run "cycles" cycles.  The moments are
+        // ignored if the experiment has no estimator.
+        public void restore(long cycles, long inside, Moments moments)
+        {
+                keptFrom = cycles;
+                currentCycle = cycles;
+                numInside = inside;
+                if (estimator != null)
+                        estimator.restore(moments);
+                PROGRESS.setRelease(
+                        this,
+                        new Progress(cycles, inside, position, position,
+                                     moments()));
+        }
+
+        private Moments moments()
+        {
+                return estimator != null ? estimator.moments() : null;
+        }
+
+        // Run the cycles of the experiment that haven't been run yet.
+        public void run()
+        {
+                run(numCycles - currentCycle);
+        }
+
+        public long run(long cycles)
+        {
+                return run(cycles, null);
+        }
+
+        // Run the next "cycles" cycles of the experiment, without
+        // going past numCycles.
+        //
+        // The points are generated and tested by blocks, so the
+        // kernel can test several of them at once.  The loop doesn't
+        // allocate anything: the coordinates of the random points go
+        // straight into the sample store, if any.  The counters are
+        // kept in local variables, and published at the end of the
+        // run and every PUBLISH_INTERVAL cycles.
+        //
+        // If "control" isn't null, the run waits there while it is
+        // paused, and stops early once it is cancelled.  Return the
+        // number of cycles run.  A later run starts right after them.
+        public long run(long cycles, RunControl control)
+        {
+                long first = this.currentCycle;
+                long currentCycle = this.currentCycle;
+                long numInside = this.numInside;
+                long position = this.position;
+                long end = Math.min(numCycles, currentCycle + cycles);
+                long publish = currentCycle + PUBLISH_INTERVAL;
+
+                // Where the run stops in the sequence of the source.
+                // Publishing it first lets other threads know which
+                // points are still to be drawn.  If the run stops
+                // early, they stay pending until the next seek.
+                long stop = position + (end - currentCycle);
+                publish(currentCycle, numInside, position, stop);
+
+                while (currentCycle < end) {
+                        int n = (int)Math.min(BLOCK_SIZE, end - currentCycle);
+
+                        source.next(blockX, blockY, n);
+                        if (strata != null) {
+                                strata.map(blockX, blockY, n);
+                        } else {
+                                for (int i = 0; i < n; i++) {
+                                        blockX[i] = minX + width * blockX[i];
+                                        blockY[i] = height * blockY[i];
+                                }
+                        }
+                        int inside = kernel.test(blockX, blockY, blockInside, n);
+
+                        if (histogram != null)
+                                histogram.add(blockX, blockY, blockInside, n);
+
+                        if (estimator != null)
+                                estimator.add(blockX, blockY, blockInside,
+                                              position, n);
+
+                        if (samples != null)
+                                for (int i = 0; i < n; i++)
+                                        samples.set(currentCycle + i,
+                                                    blockX[i],
+                                                    blockY[i],
+                                                    blockInside[i]);
+                        else if (reservoir != null)
+                                for (int i = 0; i < n; i++)
+                                        reservoir.offer(currentCycle - keptFrom + i,
+                                                        blockX[i],
+                                                        blockY[i],
+                                                        blockInside[i]);
+                        numInside += inside;
+                        currentCycle += n;
+                        position += n;
+
+                        if (currentCycle >= publish && currentCycle < end) {
+                                publish(currentCycle, numInside, position, stop);
+                                publish = currentCycle + PUBLISH_INTERVAL;
+                                if (control != null && !control.proceed())
+                                        break;
+                        }
+                }
+                if (estimator != null)
+                        estimator.flush();
+                publish(currentCycle, numInside, position, stop);
+                return currentCycle - first;
+        }
+
+        private void publish(long currentCycle,
+                             long numInside,
+                             long position,
+                             long stop)
+        {
+                this.currentCycle = currentCycle;
+                this.numInside = numInside;
+                this.position = position;
+                PROGRESS.setRelease(
+                        this,
+                        new Progress(currentCycle, numInside, position, stop,
+                                     moments()));
+        }
+
+        // Return the counters of the experiment as last published.
+        // Any thread may call it.
+        public Progress progress()
+        {
+                return (Progress)PROGRESS.getAcquire(this);
+        }
+
+        // Return a cursor over the points kept so far.
+        public SampleCursor iterator()
+        {
+                if (retention == SampleRetention.NONE)
+                        return SampleCursor.EMPTY;
+
+                SampleStore samples = this.samples != null ?
+                        this.samples : reservoir.samples();
+                long from = this.samples != null ? keptFrom : 0;
+                return new SampleCursor() {
+                        private long i = from - 1;
+
+                        // End of the points published when hasNext()
+                        // last ran out of them.
+                        private long kept = from;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                                if (i + 1 < kept)
+                                        return true;
+                                kept = keptEnd();
+                                return i + 1 < kept;
+                        }
+
+                        @Override
+                        public void next() { i++; }
+
+                        @Override
+                        public float x() { return samples.x(i); }
+
+                        @Override
+                        public float y() { return samples.y(i); }
+
+                        @Override
+                        public boolean isInside() { return samples.isInside(i); }
+                };
+        }
+
+        // Index in the store after the last point that an iterator
+        // can currently go through.  The store holds the point of
+        // each cycle at its index, or the reservoir its points from
+        // 0.
+        private long keptEnd()
+        {
+                long cycles = progress().cycles();
+
+                return samples != null ?
+                        cycles :
+                        Math.min(cycles - keptFrom, reservoir.capacity());
+        }
+
+        // Return the estimate of the area covered by the circles
+        // inside the field of the experiment.
+        public double currentEstim()
+        {
+                Progress p = progress();
+
+                if (p.moments() != null)
+                        return exactArea() + p.moments().mean() * sampledArea();
+                return exactArea() +
+                        (double)p.inside()/p.cycles() * sampledArea();
+        }
+
+        // Return the variance of currentEstim().
+        public double variance()
+        {
+                Progress p = progress();
+
+                if (p.moments() != null)
+                        return p.moments().variance() *
+                                sampledArea() * sampledArea();
+                return Statistics.variance(
+                        sampledArea(), p.inside(), p.cycles());
+        }
+
+        // Return the part of the estimate that is known without
+        // drawing any point.
+        public double exactArea()
+        {
+                return strata != null ? strata.exactArea() : 0;
+        }
+
+        // Return the area the random points are drawn from.
+        public double sampledArea()
+        {
+                return strata != null ?
+                        strata.sampledArea() : (double)width * height;
+        }
+
+        public float width() { return width; }
+        public float height() { return height; }
+        public long numCycles() { return numCycles; }
+        public long numInside() { return progress().inside(); }
+        public long currentCycle() { return progress().cycles(); }
+        public SampleRetention retention() { return retention; }
+        public Circle[] circles() { return circles; }
+        public HitHistogram histogram() { return histogram; }
+}
@@ -0,0 +1,715 @@
+package montecarlo1;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import java.lang.InterruptedException;
+import java.lang.NullPointerException;
+import java.lang.NumberFormatException;
+import java.lang.SecurityException;
+
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.JComboBox;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+class Square extends JPanel {
+        // Colors of the points inside and outside the circles.
+        private static final int INSIDE_RGB = Color.BLUE.getRGB();
+        private static final int OUTSIDE_RGB = Color.RED.getRGB();
+
+        private final int PIXEL_SIZE;
+        private BufferedImage image;        
+        private Graphics2D g2d;
+
+        // The pixels of the image, row after row.  Points are drawn
+        // by writing straight into them.
+        private int pixels[];
+
+        // The pixels of the image before any point is drawn.
+        private int background[];
+
+        // Bounds of the pixels drawn since the last repaint.  The
+        // region is empty when dirtyMinX > dirtyMaxX.
+        private int dirtyMinX;
+        private int dirtyMinY;
+        private int dirtyMaxX;
+        private int dirtyMaxY;
+        
+        public Square(int pixelSize)
+        {
+                this.PIXEL_SIZE = pixelSize;
+        }
+
+        public void setup(Simulator sim)
+        {
+                image = new BufferedImage(
+                        PIXEL_SIZE, PIXEL_SIZE, BufferedImage.TYPE_INT_ARGB);
+                g2d = image.createGraphics();
+                pixels = ((DataBufferInt)image.getRaster().getDataBuffer())
+                        .getData();
+                clearDirty();
+
+                /*
+                 * Draw the area we want to compute.
+                 */
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                     RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING,
+                                     RenderingHints.VALUE_RENDER_QUALITY);
+
+                g2d.setPaint(Color.LIGHT_GRAY);
+                float scale = PIXEL_SIZE / sim.size();
+                for (Circle c : sim.circles()) {
+                        Point p = c.center();
+                        int r = (int)(c.radius() * scale);
+                        int x = (int)(c.center().x() * scale);
+                        int y = (int)(c.center().y() * scale);
+                        int size = r + r;
+                        g2d.fillOval(x - r, y - r, size, size);
+                }
+                background = pixels.clone();
+
+                EventQueue.invokeLater(() -> repaint());
+        }
+
+        public void teardown()
+        {
+                g2d.dispose();
+                image.flush();
+        }
+
+        @Override
+        public void paintComponent(Graphics g)
+        {
+                super.paintComponent(g);
+
+                if (image == null)
+                        return;
+                
+                ((Graphics2D)g).drawImage(image, null, 0, 0);                
+        }
+
+        // Draw the points the cursor hasn't gone through yet, and
+        // add the region they cover to the one to repaint.
+        public void updateImage(Simulator sim, SampleCursor it) 
+        {
+                float scale = this.PIXEL_SIZE / sim.size();
+                int minX = dirtyMinX, minY = dirtyMinY;
+                int maxX = dirtyMaxX, maxY = dirtyMaxY;
+
+                while (it.hasNext()) {
+                        it.next();
+                        int x = (int)(it.x() * scale);
+                        int y = (int)(it.y() * scale);
+
+                        // Rounding may put a point lying on the far
+                        // border of the square one pixel too far.
+                        if (x < 0 || x >= PIXEL_SIZE || y < 0 || y >= PIXEL_SIZE)
+                                continue;
+                        pixels[y*PIXEL_SIZE + x] =
+                                it.isInside() ? INSIDE_RGB : OUTSIDE_RGB;
+                        minX = Math.min(minX, x);
+                        minY = Math.min(minY, y);
+                        maxX = Math.max(maxX, x);
+                        maxY = Math.max(maxY, y);
+                }
+
+                dirtyMinX = minX;
+                dirtyMinY = minY;
+                dirtyMaxX = maxX;
+                dirtyMaxY = maxY;
+        }
+
+        // Draw the given histogram as a heatmap over the circles: the
+        // color of a pixel goes from red to blue with the share of
+        // its points that are inside the circles, and its opacity
+        // grows with the logarithm of its number of points.
+        public void updateHeatmap(HitHistogram h)
+        {
+                int n = Math.min(PIXEL_SIZE, h.pixels());
+                int max = 0;
+
+                for (int y = 0; y < n; y++)
+                        for (int x = 0; x < n; x++)
+                                max = Math.max(max, h.inside(x, y) + h.outside(x, y));
+                if (max == 0)
+                        return;
+
+                double logMax = Math.log1p(max);
+                for (int y = 0; y < n; y++)
+                        for (int x = 0; x < n; x++) {
+                                int in = h.inside(x, y);
+                                int total = in + h.outside(x, y);
+                                int i = y*PIXEL_SIZE + x;
+
+                                if (total == 0) {
+                                        pixels[i] = background[i];
+                                        continue;
+                                }
+                                int blue = 255 * in / total;
+                                int color = 0xff000000 | (255 - blue) << 16 | blue;
+                                double alpha = 0.25 + 0.75 * Math.log1p(total) / logMax;
+                                pixels[i] = blend(background[i], color, alpha);
+                        }
+
+                dirtyMinX = dirtyMinY = 0;
+                dirtyMaxX = dirtyMaxY = n - 1;
+        }
+
+        // Return the opaque color "fg" drawn with the given opacity
+        // over "bg".
+        private static int blend(int bg, int fg, double alpha)
+        {
+                int rgb = 0xff000000;
+
+                for (int shift = 0; shift < 24; shift += 8) {
+                        int b = bg >> shift & 0xff;
+                        int f = fg >> shift & 0xff;
+                        rgb |= (int)(b + (f - b) * alpha) << shift;
+                }
+                return rgb;
+        }
+
+        // Repaint the region drawn since the last call, if any.
+        public void repaintDirty()
+        {
+                if (dirtyMinX > dirtyMaxX)
+                        return;
+                repaint(dirtyMinX,
+                        dirtyMinY,
+                        dirtyMaxX - dirtyMinX + 1,
+                        dirtyMaxY - dirtyMinY + 1);
+                clearDirty();
+        }
+
+        private void clearDirty()
+        {
+                dirtyMinX = dirtyMinY = Integer.MAX_VALUE;
+                dirtyMaxX = dirtyMaxY = Integer.MIN_VALUE;
+        }
+}
+
+public class GUI {
+        private static final int FPS = 60;
+        private static final int FRAME_WIDTH = 800;
+        private static final int FRAME_HEIGHT = 600;
+        private static final int HORIZ_PADDING = 5;
+        private static final int VERT_SPACING = 30;
+        private static final int LABEL_WIDTH = 101;
+        private static final int LABEL_HEIGHT = 25;
+        private static final int LEFT_PANEL_WIDTH = FRAME_WIDTH - FRAME_HEIGHT;
+        private static final int FIELD_WIDTH = LEFT_PANEL_WIDTH -
+                (HORIZ_PADDING * 3 + LABEL_WIDTH);
+        
+        private JFrame frame;
+        private JPanel mainPanel;        
+        private JPanel leftPanel;        
+        private Square square;
+
+        // Runs the simulations.
+        private final ScenarioScheduler scheduler = new ScenarioScheduler();
+
+        // Sets up the animated square, then updates it at regular
+        // interval while a simulation runs.
+        private final ScheduledExecutorService updaterExec =
+                Executors.newSingleThreadScheduledExecutor();
+
+        // Text field for the size of the whole square.
+        private JTextField sizeField;
+
+        // Text field for the number of cycles to run.
+        private JTextField cycleField;
+
+        // Text field for the number of circles.
+        private JTextField circleField;
+
+        // Text field for the number of strata, 0 to draw the points
+        // in the whole square.
+        private JTextField strataField;
+
+        // Push this button the simulation.
+        private JButton runButton;
+
+        // Pause or resume the running simulation.
+        private JButton pauseButton;
+
+        // Stop the running simulation.
+        private JButton stopButton;
+
+        // The simulation being run, or null.  Only used by the event
+        // dispatch thread.
+        private Simulator running;
+
+        // Label where the current estimated value of the area is
+        // displayed.
+        private JLabel areaDisplay;
+
+        // Label where the half-width of the 95% confidence interval
+        // of the estimated area is displayed.
+        private JLabel marginDisplay;
+
+        // Label where that display the percentage of cycles already
+        // executed.
+        private JLabel progressDisplay;
+
+        // Label that displays the elapsed time since the start of the
+        // simulation.
+        private JLabel timeDisplay;
+
+        // Specify the type of mode used for the simulation.
+        private JComboBox modeList;        
+
+        // Specify whether the square shows the points kept or a
+        // heatmap of all of them.
+        private JComboBox<String> displayList;
+
+        // Specify which of the random points the simulation keeps
+        // for display.
+        private JComboBox<SampleRetention> retentionList;
+
+        // Specify the kind of sequence the random points come from.
+        private JComboBox<Sampling> samplingList;
+        
+        public GUI()
+        {
+                this.frame = new JFrame("Montecarlo simulation");
+                this.frame.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+                this.frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+                this.mainPanel = new JPanel();
+                this.mainPanel.setLayout(
+                        new BoxLayout(mainPanel, BoxLayout.X_AXIS));
+                this.frame.add(mainPanel);
+                
+                this.leftPanel = new JPanel();
+                this.leftPanel.setPreferredSize(
+                        new Dimension(LEFT_PANEL_WIDTH, FRAME_HEIGHT));
+
+                this.square = new Square(FRAME_HEIGHT);
+                this.square.setPreferredSize(
+                        new Dimension(FRAME_HEIGHT, FRAME_HEIGHT));
+
+                this.sizeField = new JTextField("1.0");
+                this.cycleField = new JTextField("1000000");
+                this.circleField= new JTextField("10");
+                this.strataField = new JTextField("0");
+
+                this.runButton = new JButton("Run");
+                this.runButton.addActionListener(e -> runClicked());
+
+                this.pauseButton = new JButton("Pause");
+                this.pauseButton.addActionListener(e -> pauseClicked());
+                this.pauseButton.setEnabled(false);
+
+                this.stopButton = new JButton("Stop");
+                this.stopButton.addActionListener(e -> stopClicked());
+                this.stopButton.setEnabled(false);
+
+                this.areaDisplay = new JLabel();
+                this.marginDisplay = new JLabel();
+                this.progressDisplay = new JLabel("0%");
+                this.timeDisplay = new JLabel("0.0s");
+
+                String[] modes = { "sequential", "parallel", "exact" };
+                this.modeList = new JComboBox<>(modes);                
+
+                String[] displays = { "points", "heatmap" };
+                this.displayList = new JComboBox<>(displays);
+
+                this.retentionList =
+                        new JComboBox<>(SampleRetention.values());
+
+                this.samplingList = new JComboBox<>(Sampling.values());
+        }
+
+        private void init()
+        {
+                final int fieldX = HORIZ_PADDING * 2 + LABEL_WIDTH;
+                
+                leftPanel.setLayout(null);
+                square.setLayout(null);                
+
+                mainPanel.add(leftPanel);
+                mainPanel.add(square);
+
+                JLabel modeLabel = new JLabel("Mode:");
+                int y = 10;
+                modeLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(modeLabel);
+
+                modeList.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(modeList);                
+
+                JLabel displayLabel = new JLabel("Display");
+                y += VERT_SPACING;
+                displayLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(displayLabel);
+
+                displayList.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(displayList);
+
+                JLabel retentionLabel = new JLabel("Points kept");
+                y += VERT_SPACING;
+                retentionLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(retentionLabel);
+
+                retentionList.setBounds(
+                        fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(retentionList);
+
+                JLabel samplingLabel = new JLabel("Sampling");
+                y += VERT_SPACING;
+                samplingLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(samplingLabel);
+
+                samplingList.setBounds(
+                        fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(samplingList);
+                
+                JLabel sizeLabel = new JLabel("Square size");
+                y += VERT_SPACING;                
+                sizeLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(sizeLabel);
+
+                sizeField.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(sizeField);
+
+                JLabel cycleLabel = new JLabel("Number of cycles");
+                y += VERT_SPACING;                
+                cycleLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(cycleLabel);
+
+                cycleField.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(cycleField);
+
+                JLabel circleLabel = new JLabel("Number of circles");
+                y += VERT_SPACING;
+                circleLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(circleLabel);
+
+                circleField.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(circleField);                
+
+                JLabel strataLabel = new JLabel("Number of strata");
+                y += VERT_SPACING;
+                strataLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(strataLabel);
+
+                strataField.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(strataField);
+
+                y += VERT_SPACING;
+                runButton.setBounds(
+                        HORIZ_PADDING,
+                        y,
+                        LEFT_PANEL_WIDTH - 2 * HORIZ_PADDING,
+                        LABEL_HEIGHT);
+                leftPanel.add(runButton);
+
+                int halfWidth = (LEFT_PANEL_WIDTH - 3 * HORIZ_PADDING) / 2;
+                y += VERT_SPACING;
+                pauseButton.setBounds(HORIZ_PADDING, y, halfWidth, LABEL_HEIGHT);
+                leftPanel.add(pauseButton);
+                stopButton.setBounds(
+                        2 * HORIZ_PADDING + halfWidth, y, halfWidth, LABEL_HEIGHT);
+                leftPanel.add(stopButton);
+
+                JLabel areaLabel = new JLabel("Estimated area");
+                y += VERT_SPACING;
+                areaLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(areaLabel);
+
+                areaDisplay.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(areaDisplay);
+
+                JLabel marginLabel = new JLabel("Margin (95%)");
+                y += VERT_SPACING * 0.6;
+                marginLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(marginLabel);
+
+                marginDisplay.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(marginDisplay);
+
+                JLabel progressLabel = new JLabel("Progess");
+                y += VERT_SPACING * 0.6;
+                progressLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(progressLabel);
+
+                progressDisplay.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(progressDisplay);
+
+                JLabel timeLabel = new JLabel("Elapsed time");
+                y += VERT_SPACING * 0.6;
+                timeLabel.setBounds(
+                        HORIZ_PADDING, y, LABEL_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(timeLabel);
+
+                timeDisplay.setBounds(fieldX, y, FIELD_WIDTH, LABEL_HEIGHT);
+                leftPanel.add(timeDisplay);                
+                
+                frame.setVisible(true);                
+        }
+
+        // Display the message to the user.
+        private void alert(String msg) 
+        {
+                JOptionPane.showMessageDialog(
+                        this.frame,
+                        msg,
+                        "Warning!",
+                        JOptionPane.WARNING_MESSAGE);                
+                // Every alert aborts the simulation about to start.
+                runButton.setEnabled(true);
+        }
+
+        // Execute when the pause button is clicked.
+        private void pauseClicked()
+        {
+                if (running == null)
+                        return;
+
+                RunControl control = running.control();
+                if (control.isPaused()) {
+                        control.resume();
+                        pauseButton.setText("Pause");
+                } else {
+                        control.pause();
+                        pauseButton.setText("Resume");
+                }
+        }
+
+        // Execute when the stop button is clicked.  The simulation
+        // stops at its next check, which ends the run as usual.
+        private void stopClicked()
+        {
+                if (running != null)
+                        running.control().cancel();
+                pauseButton.setEnabled(false);
+                stopButton.setEnabled(false);
+        }
+
+        // Execute once the running simulation is over.
+        private void runEnded()
+        {
+                running = null;
+                pauseButton.setText("Pause");
+                pauseButton.setEnabled(false);
+                stopButton.setEnabled(false);
+                runButton.setEnabled(true);
+        }
+
+        // Read and return a float from the given text field.
+        // @throws NumberFormatException - if the text is not a valid
+        // positive double representation.
+        private float readFloat(JTextField text) throws NumberFormatException
+        {
+                float f;
+
+                try {
+                        f = Float.parseFloat(text.getText());
+                        if (f < 0)
+                                throw new NumberFormatException();
+                } catch (NullPointerException e) {
+                        throw new NumberFormatException();
+                }
+
+                return f;                
+        }
+
+        // Read and return an integer from the given text field.
+        // @throws NumberFormatException - if the text is not a valid
+        // positive integer representation.
+        private int readInt(JTextField text) throws NumberFormatException
+        {
+                int i;
+
+                try {
+                        i = Integer.parseInt(text.getText());
+                        if (i < 0)
+                                throw new NumberFormatException();
+                } catch (NullPointerException e) {
+                        throw new NumberFormatException();
+                }
+
+                return i;                
+        }
+
+        // Read and return a long from the given text field.
+        // @throws NumberFormatException - if the text is not a valid
+        // positive long representation.
+        private long readLong(JTextField text) throws NumberFormatException
+        {
+                long l;
+
+                try {
+                        l = Long.parseLong(text.getText());
+                        if (l < 0)
+                                throw new NumberFormatException();
+                } catch (NullPointerException e) {
+                        throw new NumberFormatException();
+                }
+
+                return l;
+        }
+
+        private void updateGUI(Simulator sim, long startTime)
+        {
+                double dur =  (System.currentTimeMillis() - startTime) / 1000.0;
+                int perc = (int)((sim.currentCycle()*100.0)/sim.numCycles());
+                double area = sim.currentEstim();                
+
+                progressDisplay.setText(String.format("%d%%", perc));
+                timeDisplay.setText(String.format("%.1fs", dur));
+                areaDisplay.setText(Double.isNaN(area) ? "" :
+                                    String.format("%,.4f", area));
+                marginDisplay.setText(Double.isNaN(area) ? "" :
+                                      String.format("\u00b1 %,.4f",
+                                                    sim.currentHalfWidth()));
+        }
+
+        // Execute when the run button is clicked.
+        private void runClicked()
+        {
+                float size;
+                long numCycles;
+                int numCircles;                
+                int numStrata;
+                
+                runButton.setEnabled(false);
+
+                try {
+                        size = readFloat(sizeField);
+                } catch (NumberFormatException e) {
+                        alert("Please enter a valid square size.");
+                        return;                        
+                }
+
+                try {
+                        numCycles = readLong(cycleField);                        
+                } catch (NumberFormatException e) {
+                        alert("Please enter a valid number of cycles.");
+                        return;                        
+                }
+
+                try {
+                        numCircles = readInt(circleField);
+                } catch (NumberFormatException e) {
+                        alert("Please enter a valid number of circles.");
+                        return;                        
+                }
+
+                try {
+                        numStrata = readInt(strataField);
+                } catch (NumberFormatException e) {
+                        alert("Please enter a valid number of strata.");
+                        return;
+                }
+
+                Simulator sim;
+                String mode = (String)modeList.getSelectedItem();
+                SimulationOptions options = new SimulationOptions()
+                        .retention((SampleRetention)
+                                   retentionList.getSelectedItem())
+                        .sampling((Sampling)samplingList.getSelectedItem())
+                        .strata(numStrata);
+                boolean heatmap = "heatmap".equals(displayList.getSelectedItem());
+                if (heatmap)
+                        options.histogram(FRAME_HEIGHT);
+                try {
+                        switch (mode) {
+                        case "sequential":
+                                sim = new SequentialSimulator(
+                                        numCircles, numCycles, size, options);
+                                break;
+                        case "parallel":
+                                sim = new ParallelSimulator(
+                                        numCircles, numCycles, size, options);
+                                break;
+                        case "exact":
+                                sim = new ExactSimulator(
+                                        numCircles, size, options);
+                                break;
+                        default:
+                                throw new RuntimeException(
+                                        "Unknown mode: " + mode);
+                        }
+                } catch (IllegalArgumentException e) {
+                        alert(e.getMessage());
+                        return;
+                }
+
+                running = sim;
+                pauseButton.setEnabled(true);
+                stopButton.setEnabled(true);
+
+                long period = 1000/FPS;
+                SampleCursor it = sim.iterator();
+                HitHistogram hist = heatmap ?
+                        new HitHistogram(FRAME_HEIGHT, size) : null;
+                long start = System.currentTimeMillis();
+                Runnable updater = () -> {
+                        if (heatmap) {
+                                sim.histogram(hist);
+                                square.updateHeatmap(hist);
+                        } else {
+                                square.updateImage(sim, it);
+                        }
+                        square.repaintDirty();
+                        EventQueue.invokeLater(() -> updateGUI(sim, start));
+                };                
+
+                // The updater only runs once the square is set up,
+                // since they share the same thread.
+                updaterExec.execute(() -> {
+                                square.setup(sim);
+                                ScheduledFuture<?> updaterFuture =
+                                        updaterExec.scheduleAtFixedRate(
+                                                updater, 0, period,
+                                                TimeUnit.MILLISECONDS);
+                                scheduler.submit(sim).future().whenComplete(
+                                        (s, e) -> updaterExec.execute(() -> {
+                                                        updaterFuture.cancel(false);
+                                                        updater.run();
+                                                        square.teardown();
+                                                        EventQueue.invokeLater(
+                                                                () -> runEnded());
+                                                }));
+                        });
+        }
+
+        public static void main(String[] args)
+        {
+                EventQueue.invokeLater(() -> {
+                                GUI g = new GUI();
+                                g.init();                                
+                        });
+        }
+}
@@ -0,0 +1,67 @@
+package montecarlo1;
+
+import java.util.SplittableRandom;
+
+/*
+ * The two dimensional Halton sequence, i.e. the radical inverses of
+ * the indices in base 2 for the abscissa and base 3 for the ordinate.
+ *
+ * The whole sequence is shifted by a random vector modulo 1
+ * (Cranley-Patterson rotation), so that independent runs give
+ * independent estimates while keeping the low discrepancy.
+ */
+public class HaltonSource implements SampleSource {
+        // Index of the next point.
+        private long index;
+
+        // The random shift of each coordinate.
+        private final double shiftU;
+        private final double shiftV;
+
+        public HaltonSource(long scramble)
+        {
+                SplittableRandom rnd = new SplittableRandom(scramble);
+
+                this.shiftU = rnd.nextDouble();
+                this.shiftV = rnd.nextDouble();
+        }
+
+        // Return the radical inverse of i in base 2.
+        private static double inverse2(long i)
+        {
+                return (Long.reverse(i) >>> 11) * 0x1.0p-53;
+        }
+
+        // Return the radical inverse of i in base 3.
+        private static double inverse3(long i)
+        {
+                double r = 0;
+                double f = 1.0 / 3;
+
+                for (; i > 0; i /= 3, f /= 3)
+                        r += f * (i % 3);
+                return r;
+        }
+
+        // Return x + shift modulo 1, as a float in [0, 1).
+        private static float shift(double x, double shift)
+        {
+                double y = x + shift;
+                float f = (float)(y >= 1 ? y - 1 : y);
+
+                // Rounding to a float may give exactly 1.
+                return f < 1 ? f : Math.nextDown(1f);
+        }
+
+        @Override
+        public void next(float u[], float v[], int n)
+        {
+                for (int i = 0; i < n; i++, index++) {
+                        u[i] = shift(inverse2(index), shiftU);
+                        v[i] = shift(inverse3(index), shiftV);
+                }
+        }
+
+        @Override
+        public void seek(long index) { this.index = index; }
+}
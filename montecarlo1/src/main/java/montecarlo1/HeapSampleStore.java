@@ -0,0 +1,113 @@
+package montecarlo1;
+
+import java.util.Arrays;
+
+/*
+ * Primitive storage on the heap for the random points generated by
+ * an experiment.
+ *
+ * Instead of keeping one Point object per sample, the coordinates
+ * are kept in two parallel float arrays and the "inside" flags are
+ * packed into a bitset.  This takes a bit more than 8 bytes per
+ * sample, where a Point[] costs a reference plus a 24 bytes object.
+ *
+ * The arrays are split into chunks of fixed size that are allocated
+ * as samples come in, so a store doesn't need to know in advance how
+ * many samples it will get.
+ */
+public class HeapSampleStore implements SampleStore {
+        // Number of samples per chunk.
+        private static final int CHUNK_BITS = 16;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        // Maximum number of samples the store can hold.
+        private final long capacity;
+
+        // Abscissas of the samples, chunk by chunk.
+        private float xs[][];
+
+        // Ordinates of the samples, chunk by chunk.
+        private float ys[][];
+
+        // Bit i of a chunk is set when its sample i is inside the
+        // area we want to compute.
+        private long inside[][];
+
+        // Number of chunks allocated so far.
+        private int numChunks;
+
+        public HeapSampleStore(long capacity)
+        {
+                this.capacity = capacity;
+                this.xs = new float[0][];
+                this.ys = new float[0][];
+                this.inside = new long[0][];
+        }
+
+        @Override
+        public void set(long i, float x, float y, boolean isInside)
+        {
+                int c = (int)(i >>> CHUNK_BITS);
+                int j = (int)i & CHUNK_MASK;
+
+                if (c >= numChunks)
+                        grow(i);
+                xs[c][j] = x;
+                ys[c][j] = y;
+                if (isInside)
+                        inside[c][j >>> 6] |= 1L << j;
+                else
+                        inside[c][j >>> 6] &= ~(1L << j);
+        }
+
+        // Allocate the chunks needed to store a sample at index i.
+        private void grow(long i)
+        {
+                if (i >= capacity)
+                        throw new IndexOutOfBoundsException(
+                                "Sample " + i + " out of a store of " + capacity);
+
+                int num = (int)(i >>> CHUNK_BITS) + 1;
+                if (num > xs.length) {
+                        int len = (int)Math.min(
+                                Math.max(num, 2 * xs.length),
+                                (capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+                        xs = Arrays.copyOf(xs, len);
+                        ys = Arrays.copyOf(ys, len);
+                        inside = Arrays.copyOf(inside, len);
+                }
+
+                for (int c = numChunks; c < num; c++) {
+                        int size = (int)Math.min(
+                                CHUNK_SIZE, capacity - ((long)c << CHUNK_BITS));
+                        xs[c] = new float[size];
+                        ys[c] = new float[size];
+                        inside[c] = new long[(size + 63) >>> 6];
+                }
+                numChunks = num;
+        }
+
+        @Override
+        public float x(long i)
+        {
+                return xs[(int)(i >>> CHUNK_BITS)][(int)i & CHUNK_MASK];
+        }
+
+        @Override
+        public float y(long i)
+        {
+                return ys[(int)(i >>> CHUNK_BITS)][(int)i & CHUNK_MASK];
+        }
+
+        @Override
+        public boolean isInside(long i)
+        {
+                int j = (int)i & CHUNK_MASK;
+
+                return (inside[(int)(i >>> CHUNK_BITS)][j >>> 6] & (1L << j)) != 0;
+        }
+
+        @Override
+        public long capacity() { return capacity; }
+}
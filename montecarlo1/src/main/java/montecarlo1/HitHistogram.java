@@ -0,0 +1,76 @@
+package montecarlo1;
+
+import java.util.Arrays;
+
+/*
+ * Number of random points that fell inside and outside the circles
+ * in each pixel of a square image of the field.
+ *
+ * Each experiment fills its own histogram as it runs, so the threads
+ * never write to the same counters.  Displaying the simulation only
+ * needs these counters, whose size depends on the resolution of the
+ * image instead of the number of points.
+ */
+public class HitHistogram {
+        // Number of pixels along each side of the image.
+        private final int pixels;
+
+        // Number of pixels per unit of length.
+        private final float scale;
+
+        // Number of points outside and inside the circles in each
+        // pixel, row after row.  The two counters of a pixel are next
+        // to each other, so counting a point touches a single cache
+        // line.
+        private final int counts[];
+
+        // Build a histogram of the square of the given size whose
+        // lower left corner is (0, 0).
+        public HitHistogram(int pixels, float size)
+        {
+                if (pixels < 1)
+                        throw new IllegalArgumentException(
+                                "Invalid histogram resolution: " + pixels);
+                this.pixels = pixels;
+                this.scale = pixels / size;
+                this.counts = new int[2 * pixels * pixels];
+        }
+
+        // Count the points (xs[i], ys[i]), for each i below n, as
+        // inside the circles if inside[i] is true.
+        public void add(float xs[], float ys[], boolean inside[], int n)
+        {
+                for (int i = 0; i < n; i++) {
+                        int x = (int)(xs[i] * scale);
+                        int y = (int)(ys[i] * scale);
+
+                        if (x < 0 || x >= pixels || y < 0 || y >= pixels)
+                                continue;
+                        counts[2*(y*pixels + x) + (inside[i] ? 1 : 0)]++;
+                }
+        }
+
+        // Add the counters of another histogram of the same
+        // resolution to the ones of this one.
+        //
+        // The other histogram may be filled by another thread at the
+        // same time, in which case some of the points it is counting
+        // may be missed.
+        public void addAll(HitHistogram other)
+        {
+                for (int i = 0; i < counts.length; i++)
+                        counts[i] += other.counts[i];
+        }
+
+        public void clear()
+        {
+                Arrays.fill(counts, 0);
+        }
+
+        public int pixels() { return pixels; }
+
+        // Return the number of points inside and outside the circles
+        // in the pixel (x, y).
+        public int inside(int x, int y) { return counts[2*(y*pixels + x) + 1]; }
+        public int outside(int x, int y) { return counts[2*(y*pixels + x)]; }
+}
@@ -0,0 +1,185 @@
+package montecarlo1;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Loads an EstimationServer with jobs and reports their latency:
+ *
+ *      java -cp montecarlo1.jar montecarlo1.LoadClient \
+ *              --url http://localhost:8080 --jobs 1000 --clients 16
+ *
+ * Each client submits a job, waits for it to be done, and submits
+ * the next one.  A job refused because the server is overloaded is
+ * submitted again after the delay the server asks for, which counts
+ * in its latency.  The jobs are spread over "--scenes" sets of
+ * random circles, so that the server can coalesce the ones on the
+ * same circles.  With "--local WORKERS", the client starts a server
+ * of its own first.
+ */
+public class LoadClient {
+        // Longest wait for a job per request.
+        private static final long WAIT_MILLIS = 10_000;
+
+        private String url = "http://localhost:8080";
+        private int numJobs = 1000;
+        private int numClients = 16;
+        private int numScenes = 4;
+        private int numCircles = 100;
+        private long numCycles = 1_000_000;
+        private int local = 0;
+        private int queueLength = 64;
+
+        private final HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+
+        // Number of jobs handed out to the clients, and refusals.
+        private final AtomicInteger handedOut = new AtomicInteger();
+        private final AtomicLong refused = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        // Latency of each job done, in nanoseconds.
+        private long latencies[];
+
+        private void parse(String[] args)
+        {
+                for (int i = 0; i + 1 < args.length; i += 2) {
+                        String val = args[i + 1];
+                        switch (args[i]) {
+                        case "--url": url = val; break;
+                        case "--jobs": numJobs = Integer.parseInt(val); break;
+                        case "--clients": numClients = Integer.parseInt(val); break;
+                        case "--scenes": numScenes = Integer.parseInt(val); break;
+                        case "--circles": numCircles = Integer.parseInt(val); break;
+                        case "--cycles": numCycles = Long.parseLong(val); break;
+                        case "--local": local = Integer.parseInt(val); break;
+                        case "--queue": queueLength = Integer.parseInt(val); break;
+                        default:
+                                throw new IllegalArgumentException(
+                                        "Unknown option: " + args[i]);
+                        }
+                }
+        }
+
+        private void run() throws InterruptedException
+        {
+                ExecutorService exec = Executors.newFixedThreadPool(
+                        numClients, ScenarioScheduler.daemonThreads("client-"));
+
+                latencies = new long[numJobs];
+                Arrays.fill(latencies, -1);
+                long start = System.nanoTime();
+                for (int i = 0; i < numClients; i++)
+                        exec.submit(this::client);
+                exec.shutdown();
+                exec.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                long done[] = Arrays.stream(latencies).filter(l -> l >= 0).sorted().toArray();
+                System.out.printf("jobs=%d failed=%d refused=%d seconds=%.2f " +
+                                  "jobs_per_sec=%.1f p50_ms=%.1f p99_ms=%.1f " +
+                                  "max_ms=%.1f%n",
+                                  done.length, failed.get(), refused.get(), seconds,
+                                  done.length / seconds,
+                                  percentile(done, 0.50) / 1e6,
+                                  percentile(done, 0.99) / 1e6,
+                                  percentile(done, 1) / 1e6);
+        }
+
+        private static double percentile(long sorted[], double p)
+        {
+                if (sorted.length == 0)
+                        return Double.NaN;
+                int i = (int)Math.ceil(p * sorted.length) - 1;
+                return sorted[Math.max(0, Math.min(i, sorted.length - 1))];
+        }
+
+        // Run jobs until there are none left to hand out.
+        private void client()
+        {
+                SplittableRandom rnd = new SplittableRandom();
+                int i;
+
+                while ((i = handedOut.getAndIncrement()) < numJobs) {
+                        long start = System.nanoTime();
+                        try {
+                                runJob(rnd.nextInt(numScenes));
+                                latencies[i] = System.nanoTime() - start;
+                        } catch (IOException | RuntimeException e) {
+                                failed.incrementAndGet();
+                        } catch (InterruptedException e) {
+                                return;
+                        }
+                }
+        }
+
+        // Submit a job on the given scene and wait for it to be done.
+        private void runJob(int scene) throws IOException, InterruptedException
+        {
+                String form = "circles=" + numCircles + "&circleSeed=" + scene +
+                        "&cycles=" + numCycles;
+                HttpRequest post = HttpRequest.newBuilder(URI.create(url + "/jobs"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build();
+
+                HttpResponse<String> r;
+                for (;;) {
+                        r = http.send(post, HttpResponse.BodyHandlers.ofString());
+                        if (r.statusCode() != 503)
+                                break;
+                        refused.incrementAndGet();
+                        long delay = r.headers().firstValueAsLong("Retry-After")
+                                .orElse(1);
+                        Thread.sleep(1000 * delay);
+                }
+                if (r.statusCode() != 202)
+                        throw new IOException("Job refused: " + r.body());
+
+                String location = r.headers().firstValue("Location")
+                        .orElseThrow(() -> new IOException("No location"));
+                HttpRequest get = HttpRequest.newBuilder(
+                        URI.create(url + location + "?wait=" + WAIT_MILLIS))
+                        .build();
+                for (;;) {
+                        r = http.send(get, HttpResponse.BodyHandlers.ofString());
+                        if (r.statusCode() != 200)
+                                throw new IOException("Job lost: " + r.body());
+                        if (r.body().contains("\"state\": \"done\""))
+                                return;
+                        if (!r.body().contains("\"state\": \"queued\"") &&
+                            !r.body().contains("\"state\": \"running\""))
+                                throw new IOException("Job failed: " + r.body());
+                }
+        }
+
+        public static void main(String[] args)
+                throws IOException, InterruptedException
+        {
+                LoadClient c = new LoadClient();
+                c.parse(args);
+
+                EstimationServer server = null;
+                if (c.local > 0) {
+                        server = new EstimationServer(0, c.local, c.queueLength);
+                        c.url = "http://localhost:" + server.port();
+                }
+                try {
+                        c.run();
+                } finally {
+                        if (server != null)
+                                server.close();
+                }
+        }
+}
@@ -0,0 +1,128 @@
+package montecarlo1;
+
+/*
+ * The co-moments of the points of an experiment and of a control
+ * variate, from which Estimator derives its estimate and variance.
+ *
+ * The points are grouped in units: single points, or antithetic
+ * pairs.  For each unit we know its number of points n, how many of
+ * them fell inside the circles y, and how many inside the control
+ * circle c.  We keep the sums of n, y and c and of their products.
+ * They are all integers, so the moments of several experiments add
+ * up exactly.
+ *
+ * Instances don't change, so they can be handed to other threads.
+ */
+public final class Moments {
+        public static final Moments NONE =
+                new Moments(Double.NaN, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        // Probability that a point falls inside the control circle,
+        // or NaN if there is none.
+        private final double control;
+
+        // Sums of n, n^2, y, c, n*y, n*c, y^2, c^2 and y*c over the
+        // units.
+        final long n;
+        final long nn;
+        final long y;
+        final long c;
+        final long ny;
+        final long nc;
+        final long yy;
+        final long cc;
+        final long yc;
+
+        Moments(double control,
+                long n, long nn, long y, long c,
+                long ny, long nc, long yy, long cc, long yc)
+        {
+                this.control = control;
+                this.n = n;
+                this.nn = nn;
+                this.y = y;
+                this.c = c;
+                this.ny = ny;
+                this.nc = nc;
+                this.yy = yy;
+                this.cc = cc;
+                this.yc = yc;
+        }
+
+        // Return the moments of the units of both this and "o",
+        // which must have the same control circle.
+        public Moments add(Moments o)
+        {
+                if (o.n == 0)
+                        return this;
+                if (n == 0)
+                        return o;
+                return new Moments(control,
+                                   n + o.n, nn + o.nn, y + o.y, c + o.c,
+                                   ny + o.ny, nc + o.nc,
+                                   yy + o.yy, cc + o.cc, yc + o.yc);
+        }
+
+        // Return the coefficient of the control variate that
+        // minimizes the variance of the estimate, or 0 if there is no
+        // control circle or the points don't tell yet.
+        private double beta()
+        {
+                if (Double.isNaN(control))
+                        return 0;
+
+                double scc = scc();
+                return scc > 0 ? syc() / scc : 0;
+        }
+
+        // Sums of the squared deviations of y and c from their means,
+        // and of their products.  The mean of a unit of n points is n
+        // times the mean of a point.
+        private double syy()
+        {
+                double m = (double)y / n;
+                return yy - 2*m*ny + m*m*nn;
+        }
+
+        private double scc()
+        {
+                double m = (double)c / n;
+                return cc - 2*m*nc + m*m*nn;
+        }
+
+        private double syc()
+        {
+                double my = (double)y / n;
+                double mc = (double)c / n;
+                return yc - my*nc - mc*ny + my*mc*nn;
+        }
+
+        // Return the estimate of the probability that a point falls
+        // inside the circles.  The control variate corrects it by the
+        // difference between the observed and exact probabilities of
+        // falling inside the control circle.
+        public double mean()
+        {
+                double beta = beta();
+                double p = (double)y / n;
+
+                return beta != 0 ? p - beta * ((double)c / n - control) : p;
+        }
+
+        // Return the variance of mean().  Without a control variate
+        // and pairs, it is the binomial p(1 - p)/n.  If the points
+        // all fell on the same side, we fall back to the corrected
+        // binomial variance, as the run would otherwise look exact.
+        public double variance()
+        {
+                double residual = syy() - beta() * syc();
+
+                if (!(residual > 0))
+                        return Statistics.variance(1, y, n);
+                return residual / ((double)n * n);
+        }
+
+        // Number of points, and how many of them fell inside.
+        public long count() { return n; }
+        public long inside() { return y; }
+}
@@ -0,0 +1,142 @@
+package montecarlo1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Storage outside the heap for the random points generated by an
+ * experiment.
+ *
+ * The samples are kept in chunks of direct memory, or of files
+ * mapped in memory if a directory is given, so neither the heap nor
+ * the garbage collector see them: whatever the number of samples,
+ * the store only has one small object per chunk of 2^24 samples on
+ * the heap.  Each chunk holds the coordinates of its samples, 8 bytes
+ * per sample, followed by their "inside" flags, one bit per sample.
+ *
+ * Direct memory is bounded by -XX:MaxDirectMemorySize, which is the
+ * maximum heap size by default.  Mapped files are only bounded by
+ * the disk, and the operating system pages them in and out as
+ * needed.  They are deleted as soon as they are mapped, so their
+ * space is given back once the store is garbage collected.
+ */
+public class OffHeapSampleStore implements SampleStore {
+        // Number of samples per chunk.
+        private static final int CHUNK_BITS = 24;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        // Maximum number of samples the store can hold.
+        private final long capacity;
+
+        // Directory of the files the chunks are mapped from, or null
+        // to allocate them in direct memory.
+        private final Path directory;
+
+        // The chunks allocated so far, the others are null.
+        private final ByteBuffer chunks[];
+
+        public OffHeapSampleStore(long capacity, Path directory)
+        {
+                this.capacity = capacity;
+                this.directory = directory;
+                this.chunks = new ByteBuffer[
+                        (int)((capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+        }
+
+        public OffHeapSampleStore(long capacity)
+        {
+                this(capacity, null);
+        }
+
+        @Override
+        public void set(long i, float x, float y, boolean isInside)
+        {
+                int c = (int)(i >>> CHUNK_BITS);
+                int j = (int)i & CHUNK_MASK;
+
+                if (i >= capacity)
+                        throw new IndexOutOfBoundsException(
+                                "Sample " + i + " out of a store of " + capacity);
+                ByteBuffer chunk = chunks[c];
+                if (chunk == null)
+                        chunk = chunks[c] = allocate(c);
+
+                chunk.putFloat(8*j, x);
+                chunk.putFloat(8*j + 4, y);
+
+                int flags = 8*chunkSize(c) + (j >>> 3);
+                byte b = chunk.get(flags);
+                if (isInside)
+                        chunk.put(flags, (byte)(b | (1 << (j & 7))));
+                else
+                        chunk.put(flags, (byte)(b & ~(1 << (j & 7))));
+        }
+
+        // Number of samples of chunk c.
+        private int chunkSize(int c)
+        {
+                return (int)Math.min(
+                        CHUNK_SIZE, capacity - ((long)c << CHUNK_BITS));
+        }
+
+        private ByteBuffer allocate(int c)
+        {
+                int size = chunkSize(c);
+                int bytes = 8*size + (size + 7) / 8;
+
+                if (directory == null)
+                        return ByteBuffer.allocateDirect(bytes)
+                                .order(ByteOrder.nativeOrder());
+
+                try {
+                        Path file = Files.createTempFile(
+                                directory, "samples-", ".bin");
+                        try (FileChannel ch = FileChannel.open(
+                                     file,
+                                     StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE,
+                                     StandardOpenOption.DELETE_ON_CLOSE)) {
+                                // The mapping outlives the channel and
+                                // the name of the file.
+                                return ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes)
+                                        .order(ByteOrder.nativeOrder());
+                        }
+                } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                }
+        }
+
+        @Override
+        public float x(long i)
+        {
+                return chunks[(int)(i >>> CHUNK_BITS)].getFloat(
+                        8*((int)i & CHUNK_MASK));
+        }
+
+        @Override
+        public float y(long i)
+        {
+                return chunks[(int)(i >>> CHUNK_BITS)].getFloat(
+                        8*((int)i & CHUNK_MASK) + 4);
+        }
+
+        @Override
+        public boolean isInside(long i)
+        {
+                int c = (int)(i >>> CHUNK_BITS);
+                int j = (int)i & CHUNK_MASK;
+
+                return (chunks[c].get(8*chunkSize(c) + (j >>> 3)) &
+                        (1 << (j & 7))) != 0;
+        }
+
+        @Override
+        public long capacity() { return capacity; }
+}
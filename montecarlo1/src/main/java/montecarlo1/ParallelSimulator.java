@@ -0,0 +1,537 @@
+package montecarlo1;
+
+import java.lang.InterruptedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ParallelSimulator implements Simulator {
+        // Bounds on the number of cycles of a batch, when the
+        // scheduling is Scheduling.BATCHES.
+        private static final long MIN_BATCH = 1 << 10;
+        private static final long MAX_BATCH = 1 << 16;
+
+        private final Circle circles[];        
+
+        // The options of the simulation, with the seed it uses.
+        private final SimulationOptions options;
+
+        private final float size;
+
+        private final long numCycles;        
+
+        private final Scheduling scheduling;
+
+        // Number of threads that run the simulation.
+        private final int threadNumber;
+
+        // Number of cycles of a batch.
+        private final long batchSize;
+
+        // Number of cycles already handed out to the threads, when
+        // the scheduling is Scheduling.BATCHES.
+        private final AtomicLong handedOut;
+
+        // Precision after which we stop, or null.
+        private final Precision precision;
+
+        // Half-width of the standard normal interval at the
+        // confidence level of the simulation.
+        private final double z;
+
+        // Set once the target precision is reached, to stop all the
+        // threads.
+        private volatile boolean precisionReached;
+
+        private final RunControl control = new RunControl();
+
+        // Ranges of cycles, as {start, length}, handed out in batches
+        // that were cancelled before they ended.  They are handed out
+        // again before any new range.
+        private final ConcurrentLinkedQueue<long[]> leftovers =
+                new ConcurrentLinkedQueue<>();
+
+        // Number of transfers of ranges of cycles between handedOut,
+        // the leftovers and the experiments that were begun, and that
+        // ended.  A snapshot is only consistent if it was taken while
+        // no transfer was going on.
+        private final AtomicLong transfersBegun = new AtomicLong();
+        private final AtomicLong transfersEnded = new AtomicLong();
+
+        private Experiment exp[];
+
+        // The experiments no thread is running a batch of.  A stripe
+        // leaves it once it has run all its cycles.
+        private final ConcurrentLinkedQueue<Experiment> idle =
+                new ConcurrentLinkedQueue<>();
+
+        public ParallelSimulator(Circle[] circles,
+                                 long numCycles,
+                                 float size,
+                                 SimulationOptions options)
+        {
+                // All the experiments must use the same seed, and a
+                // checkpoint must know which one it is.
+                options = options.copy().seed(options.effectiveSeed());
+
+                this.size = size;
+                this.circles = circles;
+                this.options = options;
+                this.numCycles = numCycles;
+                this.scheduling = options.scheduling();
+                this.threadNumber = options.threads();
+                this.handedOut = new AtomicLong();
+                this.precision = options.precision();
+                this.z = Statistics.zScore(options.confidence());
+                this.exp = new Experiment[threadNumber];                
+
+                // We want many more batches than threads, so that
+                // they even out, but batches large enough that
+                // taking one costs nothing compared to running it.
+                // An even size keeps antithetic pairs in the same
+                // batch.
+                this.batchSize = Math.max(
+                        MIN_BATCH,
+                        Math.min(MAX_BATCH, numCycles / (threadNumber * 64))) & ~1L;
+
+                if (scheduling == Scheduling.BATCHES) {
+                        // Every thread samples the whole field, so
+                        // they can share the same kernel.  The number
+                        // of cycles of each experiment is only an
+                        // upper bound: the batches decide how many
+                        // cycles each of them runs.  Their sources
+                        // produce the same sequence, and each batch
+                        // takes the slice of it that starts at the
+                        // index of its first cycle, so the estimate
+                        // doesn't depend on the number of threads.
+                        long seed = options.seed();
+                        Strata strata = options.strata() > 0 ?
+                                new Strata(circles, 0, 0, size, size,
+                                           options.strata()) :
+                                null;
+                        ContainmentKernel kernel =
+                                options.containment().kernel(
+                                        circles, 0, 0, size, size);
+                        for (int i = 0; i < threadNumber; i++)
+                                exp[i] = new Experiment(
+                                        circles, kernel,
+                                        options.newSource(seed),
+                                        strata,
+                                        numCycles,
+                                        0, size, size, options.retention(),
+                                        options.sampleDirectory(),
+                                        options.histogram() > 0 ?
+                                                new HitHistogram(
+                                                        options.histogram(),
+                                                        size) :
+                                                null,
+                                        Estimator.create(circles, 0, 0,
+                                                         size, size, options));
+                        idle.addAll(Arrays.asList(exp));
+                        return;
+                }
+
+                float width = size / threadNumber;
+                long num = numCycles / threadNumber;
+                float minX = 0;                
+                for (int i = 0; i < threadNumber-1; i++) {
+                        exp[i] = new Experiment(
+                                circles, num, minX, width, size, options);
+                        minX += width;                        
+                }
+                exp[threadNumber - 1] = new Experiment(
+                        circles,
+                        numCycles - num*(threadNumber - 1),
+                        minX,
+                        size - minX,
+                        size,
+                        options);                
+
+                // Each stripe takes its own slice of the sequence, as
+                // if a single experiment ran them one after the
+                // other.
+                for (int i = 0; i < threadNumber; i++)
+                        exp[i].seek(i * num);
+                idle.addAll(Arrays.asList(exp));
+        }
+
+        public ParallelSimulator(Circle[] circles, long numCycles, float size)
+        {
+                this(circles, numCycles, size, new SimulationOptions());
+        }
+
+        public ParallelSimulator(int numCircles,
+                                 long numCycles,
+                                 float size,
+                                 SimulationOptions options)
+        {
+                this(Experiment.randCircles(
+                             numCircles, size, size, options.effectiveSeed()),
+                     numCycles,
+                     size,
+                     options);                
+        }
+
+        public ParallelSimulator(int numCircles, long numCycles, float size)
+        {
+                this(numCircles, numCycles, size, new SimulationOptions());
+        }
+
+        public float size() { return size; }
+
+        public void run()
+        {
+                ExecutorService exec =
+                        Executors.newFixedThreadPool(threadNumber);
+
+                for (int i = 0; i < threadNumber; i++)
+                        exec.submit(() -> {
+                                        while (runBatch())
+                                                ;
+                                });
+
+                exec.shutdown();
+                try {
+                        exec.awaitTermination(
+                                Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                        // The threads stop at their next check.
+                        control.cancel();
+                        Thread.currentThread().interrupt();
+                }
+        }
+
+        // Run a batch on an experiment no other thread is running.
+        //
+        // With Scheduling.BATCHES, the batch is the next range of
+        // cycles nobody took yet.  With Scheduling.STRIPES, it is the
+        // next cycles of the stripe of the experiment, and a thread
+        // that finds no stripe left to run is done, even though the
+        // other threads may still be running theirs.
+        @Override
+        public boolean runBatch()
+        {
+                if (precisionReached || !control.proceed())
+                        return false;
+
+                Experiment e = idle.poll();
+                if (e == null)
+                        return false;
+
+                if (scheduling == Scheduling.BATCHES) {
+                        long range[];
+
+                        // The range leaves the leftovers or handedOut
+                        // and shows up as pending in the experiment
+                        // in the same transfer.
+                        transfersBegun.incrementAndGet();
+                        try {
+                                range = leftovers.poll();
+                                if (range == null) {
+                                        long start = handedOut.getAndAdd(batchSize);
+                                        if (start < numCycles)
+                                                range = new long[] {
+                                                        start,
+                                                        Math.min(batchSize,
+                                                                 numCycles - start)
+                                                };
+                                }
+                                if (range != null)
+                                        e.seek(range[0], range[1]);
+                        } finally {
+                                transfersEnded.incrementAndGet();
+                        }
+                        if (range == null) {
+                                idle.add(e);
+                                return false;
+                        }
+
+                        long ran = e.run(range[1], control);
+                        if (ran < range[1]) {
+                                transfersBegun.incrementAndGet();
+                                try {
+                                        leftovers.add(new long[] {
+                                                        range[0] + ran,
+                                                        range[1] - ran
+                                                });
+                                        e.seek(range[0] + ran);
+                                } finally {
+                                        transfersEnded.incrementAndGet();
+                                }
+                        }
+                        idle.add(e);
+                } else {
+                        e.run(batchSize, control);
+                        if (e.currentCycle() < e.numCycles())
+                                idle.add(e);
+                }
+                checkPrecision();
+                return !control.isCancelled();
+        }
+
+        @Override
+        public int parallelism() { return threadNumber; }
+
+        @Override
+        public RunControl control() { return control; }
+
+        // Tell all the threads to stop if the target precision is
+        // reached.
+        private void checkPrecision()
+        {
+                if (precision != null &&
+                    precision.reached(currentEstim(),
+                                      currentHalfWidth(),
+                                      currentCycle()))
+                        precisionReached = true;
+        }
+
+        public double currentEstim()
+        {
+                // Stripes cover different parts of the field and may
+                // have run different numbers of cycles, so we add up
+                // their own estimates.
+                if (scheduling == Scheduling.STRIPES) {
+                        double estim = 0;
+                        for (Experiment e: exp)
+                                estim += e.currentEstim();
+                        return estim;
+                }
+
+                long num = 0;
+                long total = 0;
+                Moments moments = Moments.NONE;
+
+                for (Experiment e: exp) {
+                        Progress p = e.progress();
+                        num += p.inside();
+                        total += p.cycles();
+                        if (p.moments() != null)
+                                moments = moments.add(p.moments());
+                }
+
+                // All the experiments share the same strata and
+                // control circle.
+                if (moments.count() > 0)
+                        return exp[0].exactArea() +
+                                moments.mean() * exp[0].sampledArea();
+                return exp[0].exactArea() +
+                        (double)num/total * exp[0].sampledArea();
+        }
+
+        public double currentHalfWidth()
+        {
+                double variance = 0;
+
+                if (scheduling == Scheduling.STRIPES) {
+                        for (Experiment e: exp)
+                                variance += e.variance();
+                } else {
+                        long num = 0;
+                        long total = 0;
+                        Moments moments = Moments.NONE;
+
+                        for (Experiment e: exp) {
+                                Progress p = e.progress();
+                                num += p.inside();
+                                total += p.cycles();
+                                if (p.moments() != null)
+                                        moments = moments.add(p.moments());
+                        }
+                        double area = exp[0].sampledArea();
+                        variance = moments.count() > 0 ?
+                                moments.variance() * area * area :
+                                Statistics.variance(area, num, total);
+                }
+                return z * Math.sqrt(variance);
+        }
+
+        @Override
+        public SampleCursor iterator()
+        {
+                SampleCursor it[] = new SampleCursor[threadNumber];
+                for (int i = 0; i < it.length; i++)
+                        it[i] = exp[i].iterator();
+
+                return new SampleCursor() {
+                        private int i = 0;
+
+                        // The cursor positioned by the last call to
+                        // next().  hasNext() may move "i" to another
+                        // cursor, so we can't rely on it.
+                        private SampleCursor cur;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                                for (int j = 0; j < it.length; j++) {
+                                        if (it[i].hasNext())
+                                                return true;
+                                        i = (i + 1) % it.length;
+                                }
+                                return false;                                
+                        }
+
+                        @Override
+                        public void next()
+                        {
+                                cur = it[i];
+                                cur.next();
+                        }
+
+                        @Override
+                        public float x() { return cur.x(); }
+
+                        @Override
+                        public float y() { return cur.y(); }
+
+                        @Override
+                        public boolean isInside() { return cur.isInside(); }
+                };                
+        }
+
+        @Override
+        public void histogram(HitHistogram into)
+        {
+                into.clear();
+                for (Experiment e: exp)
+                        if (e.histogram() != null)
+                                into.addAll(e.histogram());
+        }
+
+        /*
+         * The state of a simulation at some instant, enough to carry
+         * on with it later.
+         */
+        static final class Snapshot {
+                // The counters of the experiments.
+                final Progress progress[];
+
+                // Index of the first cycle not handed out yet, when
+                // the scheduling is Scheduling.BATCHES.
+                final long handedOut;
+
+                // The other ranges of cycles, as {start, length},
+                // that are still to be run, when the scheduling is
+                // Scheduling.BATCHES.
+                final List<long[]> pending;
+
+                Snapshot(Progress progress[], long handedOut, List<long[]> pending)
+                {
+                        this.progress = progress;
+                        this.handedOut = handedOut;
+                        this.pending = pending;
+                }
+        }
+
+        // Take a snapshot of the simulation while it runs.
+        //
+        // Every cycle appears exactly once in the snapshot: either
+        // in the counters of an experiment, or in a range still to
+        // be run.  So we retry until no range was transferred while
+        // we were reading them.
+        Snapshot snapshot()
+        {
+                for (;;) {
+                        long ended = transfersEnded.get();
+                        if (transfersBegun.get() != ended) {
+                                Thread.onSpinWait();
+                                continue;
+                        }
+
+                        Progress progress[] = new Progress[exp.length];
+                        List<long[]> pending = new ArrayList<>();
+                        for (int i = 0; i < exp.length; i++) {
+                                Progress p = exp[i].progress();
+                                progress[i] = p;
+                                if (p.end() > p.position())
+                                        pending.add(new long[] {
+                                                        p.position(),
+                                                        p.end() - p.position()
+                                                });
+                        }
+                        long handedOut = Math.min(numCycles, this.handedOut.get());
+                        pending.addAll(leftovers);
+
+                        if (transfersBegun.get() == ended)
+                                return new Snapshot(
+                                        progress,
+                                        handedOut,
+                                        scheduling == Scheduling.BATCHES ?
+                                                pending : List.of());
+                }
+        }
+
+        // Carry on from the given snapshot of a simulation with the
+        // same circles and options.  It must be called before the
+        // simulation runs.
+        void restore(Snapshot s)
+        {
+                if (s.progress.length != exp.length)
+                        throw new IllegalArgumentException(
+                                "Snapshot of " + s.progress.length +
+                                " experiments for " + exp.length);
+
+                if (scheduling == Scheduling.STRIPES) {
+                        idle.clear();
+                        for (int i = 0; i < exp.length; i++) {
+                                Progress p = s.progress[i];
+                                exp[i].seek(p.position());
+                                exp[i].restore(p.cycles(), p.inside(),
+                                               p.moments());
+                                if (p.cycles() < exp[i].numCycles())
+                                        idle.add(exp[i]);
+                        }
+                        return;
+                }
+
+                // Which experiment counted a cycle doesn't matter
+                // with batches, so the first one takes them all.
+                long cycles = 0;
+                long inside = 0;
+                Moments moments = Moments.NONE;
+                for (Progress p: s.progress) {
+                        cycles += p.cycles();
+                        inside += p.inside();
+                        if (p.moments() != null)
+                                moments = moments.add(p.moments());
+                }
+                exp[0].restore(cycles, inside, moments);
+                handedOut.set(s.handedOut);
+                for (long range[]: s.pending)
+                        leftovers.add(range.clone());
+        }
+
+        SimulationOptions options() { return options; }
+
+        public long numCycles() { return numCycles; }
+        public Scheduling scheduling() { return scheduling; }
+        public int threadNumber() { return threadNumber; }
+
+        public long currentCycle()
+        {
+                long num = 0;
+
+                for (Experiment e: exp)
+                        num += e.currentCycle();
+                return num;                
+        }
+
+        public Circle[] circles() { return circles; }
+
+        public static void main(String[] args)
+        {
+                Circle[] circles = { new Circle(1, 1, 1) };
+
+                ParallelSimulator s = new ParallelSimulator(
+                        circles, 2000000, 2);
+                s.run();
+                System.out.println("Pi area: " + s.currentEstim());
+        }
+}
@@ -1,4 +1,7 @@
+package montecarlo1;
+
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /*
  * Represents a point in a plane.
@@ -30,10 +33,9 @@ public class Point {
         public boolean isInside() { return isInside; }
 
         // Return a random float between min (included) and max (excluded).
-        private static float rand(float min, float max)
+        private static float rand(RandomGenerator rnd, float min, float max)
         {
-                return min +
-                        (max - min) * ThreadLocalRandom.current().nextFloat();
+                return min + (max - min) * rnd.nextFloat();
         }
         // Return a random point whose abscissa is between minx
         // (included) and maxx (excluded) and ordinate is between miny
@@ -43,6 +45,17 @@ public class Point {
                                    float minY,
                                    float maxY)
         {
-                return new Point(rand(minX, maxX), rand(minY, maxY));
+                return random(
+                        ThreadLocalRandom.current(), minX, maxX, minY, maxY);
+        }
+
+        // Same as above, with the random values drawn from "rnd".
+        public static Point random(RandomGenerator rnd,
+                                   float minX,
+                                   float maxX,
+                                   float minY,
+                                   float maxY)
+        {
+                return new Point(rand(rnd, minX, maxX), rand(rnd, minY, maxY));
         }
 }
@@ -0,0 +1,66 @@
+package montecarlo1;
+
+/*
+ * A target precision for a simulation.
+ *
+ * A simulation with a target precision stops as soon as the
+ * confidence interval of its estimate is narrow enough, even if it
+ * hasn't run all its cycles yet.  The bound on its half-width is
+ * either absolute, or relative to the estimate.
+ */
+public class Precision {
+        // We don't trust the estimate of the variance before this
+        // number of cycles.
+        private static final long MIN_CYCLES = 10_000;
+
+        // Largest acceptable half-width of the confidence interval,
+        // absolute or relative.
+        private final double error;
+
+        // Is "error" relative to the estimate?
+        private final boolean relative;
+
+        // Probability that the interval holds the actual area.
+        private final double confidence;
+
+        private Precision(double error, boolean relative, double confidence)
+        {
+                if (!(error > 0))
+                        throw new IllegalArgumentException(
+                                "Invalid error: " + error);
+                if (!(confidence > 0 && confidence < 1))
+                        throw new IllegalArgumentException(
+                                "Invalid confidence level: " + confidence);
+                this.error = error;
+                this.relative = relative;
+                this.confidence = confidence;
+        }
+
+        // Stop once the estimate is within "error" of the area, with
+        // the given confidence.
+        public static Precision absolute(double error, double confidence)
+        {
+                return new Precision(error, false, confidence);
+        }
+
+        // Stop once the estimate is within "error * area" of the
+        // area, with the given confidence.
+        public static Precision relative(double error, double confidence)
+        {
+                return new Precision(error, true, confidence);
+        }
+
+        // Has an estimate with the given half-width of its confidence
+        // interval, computed from the given number of cycles, reached
+        // the target precision?
+        public boolean reached(double estim, double halfWidth, long cycles)
+        {
+                if (cycles < MIN_CYCLES || Double.isNaN(halfWidth))
+                        return false;
+                return halfWidth <= (relative ? error * Math.abs(estim) : error);
+        }
+
+        public double error() { return error; }
+        public boolean isRelative() { return relative; }
+        public double confidence() { return confidence; }
+}
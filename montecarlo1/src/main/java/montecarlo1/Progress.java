@@ -0,0 +1,47 @@
+package montecarlo1;
+
+/*
+ * A snapshot of the counters of an experiment: the number of cycles
+ * it has run and how many of their points fell inside the circles,
+ * along with where it is in the sequence of its source.
+ *
+ * The thread running the experiment publishes a new snapshot every
+ * so often, so other threads always read counters that go together.
+ */
+public final class Progress {
+        public static final Progress NONE = new Progress(0, 0, 0, 0, null);
+
+        private final long cycles;
+        private final long inside;
+        private final long position;
+        private final long end;
+        private final Moments moments;
+
+        public Progress(long cycles,
+                        long inside,
+                        long position,
+                        long end,
+                        Moments moments)
+        {
+                this.cycles = cycles;
+                this.inside = inside;
+                this.position = position;
+                this.end = end;
+                this.moments = moments;
+        }
+
+        public long cycles() { return cycles; }
+        public long inside() { return inside; }
+
+        // Index in the sequence of the source of the next point.
+        public long position() { return position; }
+
+        // Index at which the points the experiment still has to draw
+        // end: those of its current run, or those a run that stopped
+        // early left over.  It is position() when there are none.
+        public long end() { return end; }
+
+        // The co-moments of the points counted, or null if the
+        // experiment has no Estimator.
+        public Moments moments() { return moments; }
+}
@@ -0,0 +1,51 @@
+package montecarlo1;
+
+/*
+ * Independent uniform pseudo-random points.
+ *
+ * The generator is SplitMix64, the one behind SplittableRandom: its
+ * n-th output only depends on the seed and n, so seeking anywhere in
+ * the sequence costs nothing.  Whatever the way the cycles of a
+ * simulation are split between threads, each cycle gets the same
+ * point for a given seed.
+ */
+public class RandomSource implements SampleSource {
+        // Increment of the state between two outputs.
+        private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+        // State before the first point of the sequence.
+        private final long origin;
+
+        // State before the next point.
+        private long state;
+
+        public RandomSource(long seed)
+        {
+                this.origin = mix64(seed);
+                this.state = origin;
+        }
+
+        // The finalizer of SplitMix64 (Stafford's variant 13).
+        private static long mix64(long z)
+        {
+                z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+                z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+                return z ^ (z >>> 31);
+        }
+
+        @Override
+        public void next(float u[], float v[], int n)
+        {
+                long s = state;
+
+                for (int i = 0; i < n; i++) {
+                        u[i] = (mix64(s += GAMMA) >>> 40) * 0x1.0p-24f;
+                        v[i] = (mix64(s += GAMMA) >>> 40) * 0x1.0p-24f;
+                }
+                state = s;
+        }
+
+        // Each point takes two outputs of the generator.
+        @Override
+        public void seek(long index) { state = origin + 2 * index * GAMMA; }
+}
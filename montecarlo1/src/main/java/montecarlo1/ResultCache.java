@@ -0,0 +1,306 @@
+package montecarlo1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Remembers the counts of the simulations that ran, so that a
+ * simulation of the same scenario carries on from them instead of
+ * starting over:
+ *
+ *      ParallelSimulator s = cache.simulator(circles, cycles, size, options);
+ *      s.run();
+ *      cache.store(s);
+ *
+ * With Scheduling.BATCHES and a seed, cycle i of a simulation draws
+ * the i-th point of the sequence of the seed, whoever runs it.  So
+ * the counts of the first n cycles are the same for all the
+ * simulations of a scenario, and a simulation of more cycles only
+ * needs to run the missing ones.  A simulation of fewer cycles gets
+ * the counts of all the cycles already run, which are more precise.
+ *
+ * A scenario is identified by a SHA-256 fingerprint of everything
+ * that decides which points are drawn and how they are counted: the
+ * circles, in any order, the size of the field, the sampling, the
+ * strata, the variance reductions, the containment kernel and the
+ * seed.  The cache keeps the counts of up to "capacity" scenarios in
+ * memory, dropping the least recently used ones, and writes them all
+ * to a directory if it is given one, where they are found again by a
+ * later cache.
+ */
+public class ResultCache {
+        private static final int MAGIC = 0x4d435243;
+        private static final int VERSION = 1;
+
+        // Size of a file of the directory: magic, version, cycles,
+        // inside and the sums of the moments.
+        private static final int FILE_SIZE = 4 + 4 + (2 + 9) * 8;
+
+        // Directory of the files of the scenarios, or null.
+        private final Path directory;
+
+        // The counts of the scenarios, least recently used first.
+        // Guarded by "this".
+        private final LinkedHashMap<String, Counts> memory;
+
+        // Number of simulations that found counts, and that didn't.
+        private long hits;
+        private long misses;
+
+        public ResultCache(int capacity, Path directory)
+        {
+                if (capacity < 1)
+                        throw new IllegalArgumentException(
+                                "Invalid capacity: " + capacity);
+                this.directory = directory;
+                this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+                                @Override
+                                protected boolean removeEldestEntry(
+                                        Map.Entry<String, Counts> eldest)
+                                {
+                                        return size() > capacity;
+                                }
+                        };
+        }
+
+        public ResultCache(int capacity)
+        {
+                this(capacity, null);
+        }
+
+        /*
+         * The counts of the first "cycles" cycles of a scenario.
+         */
+        private static final class Counts {
+                final long cycles;
+                final long inside;
+                final Moments moments;
+
+                Counts(long cycles, long inside, Moments moments)
+                {
+                        this.cycles = cycles;
+                        this.inside = inside;
+                        this.moments = moments;
+                }
+        }
+
+        // Return a simulation of at least "numCycles" cycles of the
+        // given scenario, which carries on from the counts of the
+        // cache if it has some.  Simulations that the cache can't
+        // carry on, with Scheduling.STRIPES or without a seed, are
+        // returned as is.
+        public ParallelSimulator simulator(Circle[] circles,
+                                           long numCycles,
+                                           float size,
+                                           SimulationOptions options)
+        {
+                if (options.scheduling() != Scheduling.BATCHES ||
+                    options.seed() == null)
+                        return new ParallelSimulator(
+                                circles, numCycles, size, options);
+
+                Counts counts = lookup(fingerprint(circles, size, options));
+                // Counts that end in the middle of an antithetic pair
+                // counted its first point on its own.  Carried on,
+                // they would count the second one on its own too,
+                // instead of the pair that a simulation from the start
+                // counts, so they only do for no more cycles.
+                if (counts != null && options.antithetic() &&
+                    (counts.cycles & 1) != 0 && numCycles > counts.cycles)
+                        counts = null;
+                synchronized (this) {
+                        if (counts != null)
+                                hits++;
+                        else
+                                misses++;
+                }
+                if (counts == null)
+                        return new ParallelSimulator(
+                                circles, numCycles, size, options);
+
+                ParallelSimulator sim = new ParallelSimulator(
+                        circles, Math.max(numCycles, counts.cycles),
+                        size, options);
+                Progress progress[] = new Progress[sim.threadNumber()];
+                Arrays.fill(progress, Progress.NONE);
+                progress[0] = new Progress(counts.cycles, counts.inside,
+                                           counts.cycles, counts.cycles,
+                                           counts.moments);
+                sim.restore(new ParallelSimulator.Snapshot(
+                                    progress, counts.cycles, List.of()));
+                return sim;
+        }
+
+        // Remember the counts of a simulation, unless the cache
+        // already has more cycles of its scenario.  Only the counts of
+        // the first cycles of a simulation carry on, so nothing is
+        // stored if it stopped with cycles left out in between.
+        public void store(ParallelSimulator sim)
+        {
+                SimulationOptions options = sim.options();
+                if (options.scheduling() != Scheduling.BATCHES)
+                        return;
+
+                ParallelSimulator.Snapshot s = sim.snapshot();
+                long cycles = 0;
+                long inside = 0;
+                Moments moments = Moments.NONE;
+                for (Progress p: s.progress) {
+                        cycles += p.cycles();
+                        inside += p.inside();
+                        if (p.moments() != null)
+                                moments = moments.add(p.moments());
+                }
+                if (!s.pending.isEmpty() || cycles != s.handedOut || cycles == 0)
+                        return;
+
+                String key = fingerprint(sim.circles(), sim.size(), options);
+                Counts counts = new Counts(cycles, inside, moments);
+                synchronized (this) {
+                        Counts old = memory.get(key);
+                        if (old != null && old.cycles >= cycles)
+                                return;
+                        memory.put(key, counts);
+                }
+                if (directory != null)
+                        write(key, counts);
+        }
+
+        // Return the counts of a scenario, from memory or from the
+        // directory, or null.
+        private Counts lookup(String key)
+        {
+                Counts counts;
+
+                synchronized (this) {
+                        counts = memory.get(key);
+                }
+                if (counts == null && directory != null) {
+                        counts = read(key);
+                        if (counts != null)
+                                synchronized (this) {
+                                        memory.putIfAbsent(key, counts);
+                                }
+                }
+                return counts;
+        }
+
+        private Counts read(String key)
+        {
+                ByteBuffer b;
+                try {
+                        b = ByteBuffer.wrap(Files.readAllBytes(file(key)));
+                } catch (NoSuchFileException e) {
+                        return null;
+                } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                }
+
+                // A file we don't understand is a miss.
+                if (b.remaining() != FILE_SIZE ||
+                    b.getInt() != MAGIC || b.getInt() != VERSION)
+                        return null;
+                return new Counts(
+                        b.getLong(), b.getLong(),
+                        new Moments(Double.NaN,
+                                    b.getLong(), b.getLong(), b.getLong(),
+                                    b.getLong(), b.getLong(), b.getLong(),
+                                    b.getLong(), b.getLong(), b.getLong()));
+        }
+
+        // Write the counts of a scenario to a file of the directory.
+        // They are written to a temporary file first, and then
+        // renamed, so that a reader never sees half a file.
+        private void write(String key, Counts counts)
+        {
+                ByteBuffer b = ByteBuffer.allocate(FILE_SIZE);
+                Moments m = counts.moments;
+
+                b.putInt(MAGIC).putInt(VERSION)
+                        .putLong(counts.cycles).putLong(counts.inside)
+                        .putLong(m.n).putLong(m.nn).putLong(m.y)
+                        .putLong(m.c).putLong(m.ny).putLong(m.nc)
+                        .putLong(m.yy).putLong(m.cc).putLong(m.yc);
+                try {
+                        Files.createDirectories(directory);
+                        Path tmp = Files.createTempFile(directory, key, ".tmp");
+                        Files.write(tmp, b.array());
+                        Files.move(tmp, file(key),
+                                   StandardCopyOption.REPLACE_EXISTING,
+                                   StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                }
+        }
+
+        private Path file(String key)
+        {
+                return directory.resolve(key + ".counts");
+        }
+
+        // Return the fingerprint of a scenario, in hexadecimal.
+        static String fingerprint(Circle[] circles,
+                                  float size,
+                                  SimulationOptions options)
+        {
+                // The order of the circles doesn't change the
+                // points nor how they are counted.
+                Circle sorted[] = circles.clone();
+                Arrays.sort(sorted,
+                            Comparator.comparingInt((Circle c) ->
+                                                    Float.floatToIntBits(c.center().x()))
+                            .thenComparingInt(c -> Float.floatToIntBits(c.center().y()))
+                            .thenComparingInt(c -> Float.floatToIntBits(c.radius())));
+
+                // The enums go by name, since the files of the
+                // directory outlive their order.
+                byte sampling[] = options.sampling().name()
+                        .getBytes(StandardCharsets.UTF_8);
+                byte containment[] = options.containment().name()
+                        .getBytes(StandardCharsets.UTF_8);
+                ByteBuffer b = ByteBuffer.allocate(
+                        64 + sampling.length + containment.length +
+                        12 * sorted.length);
+                b.putInt(VERSION)
+                        .putFloat(size)
+                        .putInt(sampling.length).put(sampling)
+                        .putInt(options.strata())
+                        .put((byte)(options.controlVariate() ? 1 : 0))
+                        .put((byte)(options.antithetic() ? 1 : 0))
+                        .putInt(containment.length).put(containment)
+                        .putLong(options.seed())
+                        .putInt(sorted.length);
+                for (Circle c: sorted)
+                        b.putFloat(c.center().x())
+                                .putFloat(c.center().y())
+                                .putFloat(c.radius());
+
+                try {
+                        MessageDigest md = MessageDigest.getInstance("SHA-256");
+                        md.update(b.array(), 0, b.position());
+                        StringBuilder sb = new StringBuilder();
+                        for (byte x: md.digest())
+                                sb.append(String.format("%02x", x));
+                        return sb.toString();
+                } catch (NoSuchAlgorithmException e) {
+                        throw new IllegalStateException(e);
+                }
+        }
+
+        public synchronized long hits() { return hits; }
+        public synchronized long misses() { return misses; }
+        public synchronized int size() { return memory.size(); }
+}
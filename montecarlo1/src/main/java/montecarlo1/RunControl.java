@@ -0,0 +1,89 @@
+package montecarlo1;
+
+/*
+ * Lets other threads pause, resume or cancel a running simulation.
+ *
+ * The threads running the simulation call proceed() between batches,
+ * which costs a volatile read unless the simulation is paused or
+ * cancelled.  A cancelled simulation keeps the cycles it has run, and
+ * carries on from there if it is resumed and run again.
+ */
+public class RunControl {
+        private static final int RUNNING = 0;
+        private static final int PAUSED = 1;
+        private static final int CANCELLED = 2;
+
+        // Set on the threads that must never wait for a pause to
+        // end, such as the workers a ScenarioScheduler shares between
+        // simulations.
+        private static final ThreadLocal<Boolean> NEVER_WAIT =
+                ThreadLocal.withInitial(() -> false);
+
+        private volatile int state = RUNNING;
+
+        // Make proceed() return false instead of waiting while the
+        // simulation is paused, on the calling thread.  The batch
+        // being run then stops early, as if it was cancelled, and
+        // whoever drives the thread waits for the pause to end with
+        // awaitRunning() before running the next one.
+        static void neverWait()
+        {
+                NEVER_WAIT.set(true);
+        }
+
+        // Make the threads running the simulation wait at their
+        // next check, unless it is cancelled.
+        public synchronized void pause()
+        {
+                if (state == RUNNING)
+                        state = PAUSED;
+        }
+
+        // Let the simulation run again after a pause or a
+        // cancellation.
+        public synchronized void resume()
+        {
+                state = RUNNING;
+                notifyAll();
+        }
+
+        // Make the threads running the simulation stop at their next
+        // check, including the ones waiting for a pause to end.
+        public synchronized void cancel()
+        {
+                state = CANCELLED;
+                notifyAll();
+        }
+
+        public boolean isPaused() { return state == PAUSED; }
+        public boolean isCancelled() { return state == CANCELLED; }
+
+        // Wait while the simulation is paused, then return true if
+        // it may go on, or false if it is cancelled.  A thread
+        // interrupted while waiting stops as if it was cancelled.
+        // See neverWait() for the threads that don't wait.
+        public boolean proceed()
+        {
+                int s = state;
+
+                if (s == RUNNING)
+                        return true;
+                if (s == PAUSED && NEVER_WAIT.get())
+                        return false;
+                return awaitRunning();
+        }
+
+        // Same as proceed(), on any thread.
+        public synchronized boolean awaitRunning()
+        {
+                while (state == PAUSED) {
+                        try {
+                                wait();
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return false;
+                        }
+                }
+                return state == RUNNING;
+        }
+}
@@ -0,0 +1,51 @@
+package montecarlo1;
+
+import java.util.NoSuchElementException;
+
+/*
+ * A flyweight view over a sequence of samples.
+ *
+ * A cursor doesn't hand out one object per sample.  Each call to
+ * next() moves it to the following sample, and x(), y() and
+ * isInside() then describe that sample until next() is called again.
+ */
+public interface SampleCursor {
+        // A cursor over no sample at all.
+        SampleCursor EMPTY = new SampleCursor() {
+                        @Override
+                        public boolean hasNext() { return false; }
+
+                        @Override
+                        public void next()
+                        {
+                                throw new NoSuchElementException();
+                        }
+
+                        @Override
+                        public float x() { throw new IllegalStateException(); }
+
+                        @Override
+                        public float y() { throw new IllegalStateException(); }
+
+                        @Override
+                        public boolean isInside()
+                        {
+                                throw new IllegalStateException();
+                        }
+                };
+
+        // Is there another sample available?
+        boolean hasNext();
+
+        // Move to the next sample.
+        void next();
+
+        // Abscissa of the current sample.
+        float x();
+
+        // Ordinate of the current sample.
+        float y();
+
+        // Is the current sample inside the area we want to compute?
+        boolean isInside();
+}
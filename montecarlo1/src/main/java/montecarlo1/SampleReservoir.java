@@ -0,0 +1,77 @@
+package montecarlo1;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * A uniform random sample of bounded size of a stream of points.
+ *
+ * We use Li's "Algorithm L": instead of drawing a random number for
+ * every point offered, we compute the index of the next point that
+ * enters the reservoir.  Points in between are skipped at the cost
+ * of a single comparison.
+ */
+public class SampleReservoir {
+        // The points currently in the reservoir.
+        private final SampleStore samples;
+
+        // Maximum number of points in the reservoir.
+        private final int capacity;
+
+        // Number of slots of the reservoir already filled.
+        private int size;
+
+        // Index in the stream of the next point to keep, once the
+        // reservoir is full.
+        private long next;
+
+        // Running parameter of Algorithm L.
+        private double w;
+
+        public SampleReservoir(int capacity)
+        {
+                this.samples = new HeapSampleStore(capacity);
+                this.capacity = capacity;
+                this.size = 0;
+                this.w = Math.exp(Math.log(rand()) / capacity);
+                this.next = capacity + skip();
+        }
+
+        // Offer the i-th point of the stream to the reservoir.
+        // Points must be offered in order, starting at 0.
+        public void offer(long i, float x, float y, boolean isInside)
+        {
+                if (size < capacity) {
+                        samples.set(size++, x, y, isInside);
+                        return;
+                }
+                if (i != next)
+                        return;
+
+                samples.set(ThreadLocalRandom.current().nextInt(capacity),
+                            x, y, isInside);
+                w *= Math.exp(Math.log(rand()) / capacity);
+                next += skip() + 1;
+        }
+
+        // Number of points between the last kept point and the next
+        // one to keep.
+        private long skip()
+        {
+                return (long)Math.floor(Math.log(rand()) / Math.log(1 - w));
+        }
+
+        // Return a random double in (0, 1).
+        private static double rand()
+        {
+                double d;
+
+                do {
+                        d = ThreadLocalRandom.current().nextDouble();
+                } while (d == 0);
+                return d;
+        }
+
+        public SampleStore samples() { return samples; }
+        public int size() { return size; }
+        public int capacity() { return capacity; }
+}
@@ -0,0 +1,25 @@
+package montecarlo1;
+
+/*
+ * Which of the random points an experiment keeps around once they
+ * have been counted.
+ */
+public enum SampleRetention {
+        // Keep every point on the heap.  The number of cycles is
+        // then limited by the size of the heap.
+        ALL,
+
+        // Keep every point outside the heap, in direct memory or in
+        // files mapped in memory, see OffHeapSampleStore.  The heap
+        // and the pauses of the garbage collector don't grow with
+        // the number of cycles.
+        OFF_HEAP,
+
+        // Keep a uniform random subset of bounded size of the
+        // points.
+        RESERVOIR,
+
+        // Only count the points.  The memory used doesn't depend on
+        // the number of cycles.
+        NONE
+}
@@ -0,0 +1,19 @@
+package montecarlo1;
+
+/*
+ * A sequence of points in the unit square [0, 1) x [0, 1).
+ *
+ * Experiments scale those points to their field.  A source may be
+ * pseudo-random, or a low-discrepancy sequence whose points fill the
+ * square more evenly than random ones do.
+ */
+public interface SampleSource {
+        // Set (u[i], v[i]), for each i below n, to the next n points
+        // of the sequence.
+        void next(float u[], float v[], int n);
+
+        // Move to the point of the sequence at the given index.
+        // Parallel experiments use this to take disjoint slices of
+        // the same sequence.
+        void seek(long index);
+}
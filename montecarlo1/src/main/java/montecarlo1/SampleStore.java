@@ -0,0 +1,23 @@
+package montecarlo1;
+
+/*
+ * Storage for the random points generated by an experiment, indexed
+ * by a long so that it can hold more than 2^31 of them.
+ *
+ * A store may be read by other threads while an experiment writes to
+ * it, as long as they only read the samples the experiment published
+ * with its progress.
+ */
+public interface SampleStore {
+        // Store the sample at index i.
+        void set(long i, float x, float y, boolean isInside);
+
+        float x(long i);
+
+        float y(long i);
+
+        boolean isInside(long i);
+
+        // Return the maximum number of samples the store can hold.
+        long capacity();
+}
@@ -0,0 +1,36 @@
+package montecarlo1;
+
+/*
+ * The kind of sequence the random points of a simulation come from.
+ *
+ * Pseudo-random points make the error of the estimate decrease as
+ * 1/sqrt(N).  Low-discrepancy sequences cover the field more evenly
+ * and get close to 1/N on smooth enough shapes.  Their points aren't
+ * independent though, so the binomial confidence intervals of the
+ * simulators are only conservative bounds for them.
+ */
+public enum Sampling {
+        // Independent uniform pseudo-random points.
+        RANDOM,
+
+        // The Halton sequence in bases 2 and 3, randomly shifted
+        // modulo 1.
+        HALTON,
+
+        // The Sobol sequence, scrambled with a random digital shift.
+        SOBOL;
+
+        // Return a new source of this kind.  Sources built with the
+        // same seed produce the same sequence.
+        public SampleSource newSource(long seed)
+        {
+                switch (this) {
+                case HALTON:
+                        return new HaltonSource(seed);
+                case SOBOL:
+                        return new SobolSource(seed);
+                default:
+                        return new RandomSource(seed);
+                }
+        }
+}
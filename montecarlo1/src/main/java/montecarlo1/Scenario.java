@@ -0,0 +1,73 @@
+package montecarlo1;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * A simulation submitted to a ScenarioScheduler.
+ *
+ * It is done once the simulation has run all its batches, has been
+ * cancelled, or has failed.
+ */
+public class Scenario {
+        private final Simulator simulator;
+
+        // Scenarios of higher priority have their batches run first.
+        private final int priority;
+
+        // Set when the scenario is cancelled, so no new batch starts.
+        private volatile boolean cancelled;
+
+        // Number of threads still running batches of the scenario.
+        private final AtomicInteger running;
+
+        // Completed with the simulator once the scenario is done.
+        private final CompletableFuture<Simulator> future =
+                new CompletableFuture<>();
+
+        Scenario(Simulator simulator, int priority)
+        {
+                this.simulator = simulator;
+                this.priority = priority;
+                this.running = new AtomicInteger(simulator.parallelism());
+        }
+
+        // Stop the scenario.  The batches being run stop at their
+        // next check of the control of the simulator, after which
+        // the scenario is done.
+        public void cancel()
+        {
+                cancelled = true;
+                simulator.control().cancel();
+        }
+
+        // Wait for the scenario to be done, and return its simulator.
+        // @throws CancellationException - if it was cancelled.
+        // @throws CompletionException - if one of its batches failed.
+        public Simulator join()
+        {
+                return future.join();
+        }
+
+        // Called by each thread running batches of the scenario when
+        // it has no batch left to run, or when one of them failed.
+        void threadDone(Throwable failure)
+        {
+                if (failure != null)
+                        future.completeExceptionally(failure);
+                if (running.decrementAndGet() > 0)
+                        return;
+                if (cancelled)
+                        future.cancel(false);
+                else
+                        future.complete(simulator);
+        }
+
+        public Simulator simulator() { return simulator; }
+        public int priority() { return priority; }
+        public boolean isCancelled() { return cancelled; }
+        public boolean isDone() { return future.isDone(); }
+
+        // Return a future completed like join() returns.
+        public CompletableFuture<Simulator> future() { return future; }
+}
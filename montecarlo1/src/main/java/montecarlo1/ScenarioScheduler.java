@@ -0,0 +1,213 @@
+package montecarlo1;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Runs many simulations at once on a single, bounded pool of worker
+ * threads.
+ *
+ * The CPU work is split into slices of the simulations, each of
+ * which runs batches (see Simulator.runBatch()) for at most
+ * SLICE_NANOS.  The workers take the slices from a queue ordered by
+ * priority, and then by submission order, and a slice ends early when
+ * one of higher priority is waiting.  A scenario of higher priority
+ * therefore gets the cores within a batch of its arrival, and the
+ * total throughput depends on the number of workers, not on the
+ * number of scenarios.
+ *
+ * Each thread of each scenario is driven by a cheap orchestration
+ * thread that hands its slices to the workers one at a time and
+ * waits for them.  These are virtual threads when the JVM has them
+ * (Java 21 and later), and plain threads otherwise.
+ */
+public class ScenarioScheduler implements AutoCloseable {
+        // Longest time a worker runs batches of the same scenario
+        // before giving the other scenarios a chance.  Long enough
+        // for handing slices over to cost nothing in comparison.
+        private static final long SLICE_NANOS = 1_000_000;
+
+        // Runs the batches.
+        private final ThreadPoolExecutor workers;
+
+        // Runs the orchestration threads.
+        private final ExecutorService orchestrators;
+
+        // Number of slices queued so far, to run the ones of the
+        // same priority in order.
+        private final AtomicLong sequence = new AtomicLong();
+
+        public ScenarioScheduler(int numWorkers)
+        {
+                if (numWorkers < 1)
+                        throw new IllegalArgumentException(
+                                "Invalid number of workers: " + numWorkers);
+                // A paused scenario must not hold a worker the others
+                // need, so the workers never wait for a pause to end:
+                // its orchestration threads do.
+                ThreadFactory threads = daemonThreads("scenario-worker-");
+                this.workers = new ThreadPoolExecutor(
+                        numWorkers, numWorkers,
+                        0, TimeUnit.MILLISECONDS,
+                        new PriorityBlockingQueue<>(),
+                        r -> threads.newThread(() -> {
+                                        RunControl.neverWait();
+                                        r.run();
+                                }));
+                this.orchestrators = newOrchestrators();
+        }
+
+        public ScenarioScheduler()
+        {
+                this(Runtime.getRuntime().availableProcessors());
+        }
+
+        // Return an executor that starts a virtual thread per task,
+        // or a plain daemon thread if the JVM has no virtual threads.
+        private static ExecutorService newOrchestrators()
+        {
+                try {
+                        Method m = Executors.class.getMethod(
+                                "newVirtualThreadPerTaskExecutor");
+                        return (ExecutorService)m.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                        return Executors.newCachedThreadPool(
+                                daemonThreads("scenario-orchestrator-"));
+                }
+        }
+
+        static ThreadFactory daemonThreads(String prefix)
+        {
+                AtomicInteger n = new AtomicInteger();
+
+                return r -> {
+                        Thread t = new Thread(r, prefix + n.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                };
+        }
+
+        // Start running the given simulation, whose batches run
+        // before the ones of the scenarios of lower priority.
+        public Scenario submit(Simulator simulator, int priority)
+        {
+                Scenario s = new Scenario(simulator, priority);
+
+                for (int i = 0; i < simulator.parallelism(); i++)
+                        orchestrators.execute(() -> orchestrate(s));
+                return s;
+        }
+
+        public Scenario submit(Simulator simulator)
+        {
+                return submit(simulator, 0);
+        }
+
+        // Hand slices of the scenario to the workers one after the
+        // other, until there are no batches left or the scenario is
+        // cancelled.  While it is paused, wait here rather than on a
+        // worker.
+        private void orchestrate(Scenario s)
+        {
+                RunControl control = s.simulator().control();
+                Throwable failure = null;
+
+                try {
+                        while (!s.isCancelled() && control.awaitRunning()) {
+                                Slice slice = new Slice(s, sequence.getAndIncrement());
+                                workers.execute(slice);
+                                if (!slice.result.join())
+                                        break;
+                        }
+                } catch (Throwable t) {
+                        failure = t;
+                }
+                s.threadDone(failure);
+        }
+
+        // Return the number of slices waiting for a worker.
+        public int queued() { return workers.getQueue().size(); }
+
+        // Stop the workers once the slices already queued are run.
+        // The scenarios still running then never finish, so they
+        // should be cancelled or joined first.
+        @Override
+        public void close()
+        {
+                workers.shutdown();
+                orchestrators.shutdown();
+        }
+
+        /*
+         * A slice of a scenario, waiting for a worker.
+         */
+        private class Slice implements Runnable, Comparable<Slice> {
+                private final Scenario scenario;
+                private final long sequence;
+
+                // Completed with false once the scenario has no
+                // batches left to run, and true otherwise.
+                private final CompletableFuture<Boolean> result =
+                        new CompletableFuture<>();
+
+                Slice(Scenario scenario, long sequence)
+                {
+                        this.scenario = scenario;
+                        this.sequence = sequence;
+                }
+
+                @Override
+                public void run()
+                {
+                        long end = System.nanoTime() + SLICE_NANOS;
+                        boolean more = true;
+
+                        try {
+                                // The scenario may have been cancelled
+                                // while the slice was waiting.
+                                RunControl control = scenario.simulator().control();
+                                while (!scenario.isCancelled() &&
+                                       (more = scenario.simulator().runBatch()) &&
+                                       System.nanoTime() < end &&
+                                       !control.isPaused() &&
+                                       !preempted())
+                                        ;
+                                // A batch stopped by a pause runs
+                                // again once it ends.
+                                if (control.isPaused())
+                                        more = true;
+                                result.complete(more && !scenario.isCancelled());
+                        } catch (Throwable t) {
+                                result.completeExceptionally(t);
+                        }
+                }
+
+                // Return true if a slice of higher priority waits
+                // for a worker.
+                private boolean preempted()
+                {
+                        Runnable next = workers.getQueue().peek();
+
+                        return next != null &&
+                                ((Slice)next).scenario.priority() > scenario.priority();
+                }
+
+                @Override
+                public int compareTo(Slice o)
+                {
+                        if (scenario.priority() != o.scenario.priority())
+                                return Integer.compare(
+                                        o.scenario.priority(),
+                                        scenario.priority());
+                        return Long.compare(sequence, o.sequence);
+                }
+        }
+}
@@ -0,0 +1,324 @@
+package montecarlo1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A simulation whose circles can be added, moved and removed once it
+ * has run, without drawing its points again.
+ *
+ * The simulator keeps all its points, and for each of them the
+ * number of circles that contain it.  A point is inside the union of
+ * the circles as long as that number isn't 0.  When a circle
+ * changes, only the points around its old and new positions are
+ * tested against it, so updating the estimate costs about the number
+ * of points inside the circle, whatever the total number of points.
+ *
+ * To find these points quickly, they are sorted into the buckets of
+ * a uniform grid once they are all drawn: the points of each bucket
+ * are stored next to each other, and we know where each bucket
+ * starts.
+ *
+ * The points are drawn from the whole field, so there are no strata,
+ * and kept in Java arrays, so there are fewer than 2^31 of them.
+ */
+public class SceneSimulator implements Simulator {
+        // Number of points drawn by a call to runBatch().
+        private static final int BATCH_SIZE = 1 << 16;
+
+        // Average number of points per bucket of the grid.
+        private static final int POINTS_PER_BUCKET = 16;
+
+        // Upper bound on the number of buckets along a side.
+        private static final int MAX_SIDE = 4096;
+
+        private final float size;
+
+        private final int numCycles;
+
+        // Where the points come from.
+        private final SampleSource source;
+
+        // Half-width of the standard normal interval at the
+        // confidence level of the simulation.
+        private final double z;
+
+        private final RunControl control = new RunControl();
+
+        // The circles by id.  Removed circles leave a null behind, so
+        // the ids of the others don't change.
+        private final List<Circle> circles = new ArrayList<>();
+
+        // The coordinates of the points, and the number of circles
+        // containing each of them.  Once all the points are drawn,
+        // they are sorted by bucket.
+        private float xs[];
+        private float ys[];
+        private int counts[];
+
+        // Number of buckets along each side of the grid, or 0 until
+        // the points are sorted.
+        private int side;
+
+        // The points of bucket (col, row) lie between indices
+        // start[row*side + col] (included) and start[row*side + col
+        // + 1] (excluded).
+        private int start[];
+
+        // Counts the circles containing the points while they are
+        // drawn, or null once they are all drawn.
+        private CircleGrid grid;
+
+        // Number of points drawn so far, and how many of them lie
+        // inside at least one circle.  Guarded by "this", like all
+        // the state of the scene once the points are drawn.
+        private int drawn;
+        private long inside;
+
+        public SceneSimulator(Circle[] circles,
+                              int numCycles,
+                              float size,
+                              SimulationOptions options)
+        {
+                this.size = size;
+                this.numCycles = numCycles;
+                this.source = options.sampling().newSource(options.effectiveSeed());
+                this.z = Statistics.zScore(options.confidence());
+                for (Circle c: circles)
+                        this.circles.add(c);
+                this.xs = new float[numCycles];
+                this.ys = new float[numCycles];
+                this.counts = new int[numCycles];
+        }
+
+        public SceneSimulator(int numCircles,
+                              int numCycles,
+                              float size,
+                              SimulationOptions options)
+        {
+                this(Experiment.randCircles(
+                             numCircles, size, size, options.effectiveSeed()),
+                     numCycles,
+                     size,
+                     options);
+        }
+
+        public void run()
+        {
+                while (runBatch())
+                        ;
+        }
+
+        // Draw the next points and count the circles that contain
+        // them.  Once they are all drawn, sort them into the grid.
+        @Override
+        public synchronized boolean runBatch()
+        {
+                if (side > 0 || !control.proceed())
+                        return false;
+
+                // Preparing the circles would drop some of them, and
+                // change the counts.
+                if (grid == null)
+                        grid = new CircleGrid(
+                                circles(), 0, 0, size, size, false);
+
+                int n = Math.min(BATCH_SIZE, numCycles - drawn);
+                float u[] = new float[n];
+                float v[] = new float[n];
+
+                source.next(u, v, n);
+                for (int i = 0; i < n; i++) {
+                        int k = drawn + i;
+                        xs[k] = size * u[i];
+                        ys[k] = size * v[i];
+                        counts[k] = grid.count(xs[k], ys[k]);
+                        if (counts[k] > 0)
+                                inside++;
+                }
+                drawn += n;
+
+                if (drawn < numCycles)
+                        return true;
+                grid = null;
+                sort();
+                return false;
+        }
+
+        // Sort the points by bucket, with a counting sort.
+        private void sort()
+        {
+                int side = (int)Math.max(1, Math.min(
+                        MAX_SIDE, Math.sqrt((double)numCycles / POINTS_PER_BUCKET)));
+                int bucket[] = new int[numCycles];
+
+                start = new int[side*side + 1];
+                this.side = side;
+                for (int i = 0; i < numCycles; i++) {
+                        bucket[i] = row(ys[i])*side + col(xs[i]);
+                        start[bucket[i] + 1]++;
+                }
+                for (int b = 0; b < side*side; b++)
+                        start[b + 1] += start[b];
+
+                int fill[] = start.clone();
+                float sx[] = new float[numCycles];
+                float sy[] = new float[numCycles];
+                int sc[] = new int[numCycles];
+                for (int i = 0; i < numCycles; i++) {
+                        int k = fill[bucket[i]]++;
+                        sx[k] = xs[i];
+                        sy[k] = ys[i];
+                        sc[k] = counts[i];
+                }
+                xs = sx;
+                ys = sy;
+                counts = sc;
+        }
+
+        // Return the column of the grid the abscissa x falls in.
+        // Abscissas outside of the field are mapped to its borders.
+        private int col(float x)
+        {
+                return Math.max(0, Math.min((int)(x / size * side), side - 1));
+        }
+
+        private int row(float y)
+        {
+                return Math.max(0, Math.min((int)(y / size * side), side - 1));
+        }
+
+        // Add "delta" to the counts of the points inside the circle.
+        private void update(Circle c, int delta)
+        {
+                float x = c.center().x();
+                float y = c.center().y();
+                float r = c.radius();
+                int col0 = col(x - r), col1 = col(x + r);
+                int row0 = row(y - r), row1 = row(y + r);
+
+                for (int i = row0; i <= row1; i++) {
+                        // The buckets of a row of the grid are next
+                        // to each other, and so are their points.
+                        int from = start[i*side + col0];
+                        int to = start[i*side + col1 + 1];
+                        for (int k = from; k < to; k++)
+                                if (c.contains(xs[k], ys[k])) {
+                                        int before = counts[k];
+                                        counts[k] += delta;
+                                        if (before == 0)
+                                                inside++;
+                                        else if (counts[k] == 0)
+                                                inside--;
+                                }
+                }
+        }
+
+        private void checkReady()
+        {
+                if (side == 0)
+                        throw new IllegalStateException(
+                                "The simulation hasn't run yet");
+        }
+
+        // Add a circle to the scene and return its id.
+        public synchronized int add(Circle c)
+        {
+                checkReady();
+                update(c, 1);
+                circles.add(c);
+                return circles.size() - 1;
+        }
+
+        // Replace the circle of the given id.
+        public synchronized void move(int id, Circle c)
+        {
+                checkReady();
+                update(circle(id), -1);
+                update(c, 1);
+                circles.set(id, c);
+        }
+
+        // Remove the circle of the given id.
+        public synchronized void remove(int id)
+        {
+                checkReady();
+                update(circle(id), -1);
+                circles.set(id, null);
+        }
+
+        private Circle circle(int id)
+        {
+                Circle c = id >= 0 && id < circles.size() ?
+                        circles.get(id) : null;
+
+                if (c == null)
+                        throw new IllegalArgumentException("No circle " + id);
+                return c;
+        }
+
+        @Override
+        public int parallelism() { return 1; }
+
+        @Override
+        public RunControl control() { return control; }
+
+        public synchronized double currentEstim()
+        {
+                return (double)inside / drawn * size * size;
+        }
+
+        public synchronized double currentHalfWidth()
+        {
+                return z * Math.sqrt(
+                        Statistics.variance((double)size * size, inside, drawn));
+        }
+
+        @Override
+        public synchronized SampleCursor iterator()
+        {
+                float xs[] = this.xs;
+                float ys[] = this.ys;
+                int counts[] = this.counts;
+                int n = drawn;
+
+                // The cursor sees the counts as they change, but
+                // never the points of another order.
+                return new SampleCursor() {
+                        private int i = -1;
+
+                        @Override
+                        public boolean hasNext() { return i + 1 < n; }
+
+                        @Override
+                        public void next() { i++; }
+
+                        @Override
+                        public float x() { return xs[i]; }
+
+                        @Override
+                        public float y() { return ys[i]; }
+
+                        @Override
+                        public boolean isInside() { return counts[i] > 0; }
+                };
+        }
+
+        @Override
+        public void histogram(HitHistogram into) { into.clear(); }
+
+        public float size() { return size; }
+        public long numCycles() { return numCycles; }
+        public synchronized long currentCycle() { return drawn; }
+
+        // Return the circles of the scene, without the ones removed.
+        public synchronized Circle[] circles()
+        {
+                List<Circle> live = new ArrayList<>();
+
+                for (Circle c: circles)
+                        if (c != null)
+                                live.add(c);
+                return live.toArray(new Circle[0]);
+        }
+}
@@ -0,0 +1,17 @@
+package montecarlo1;
+
+/*
+ * How a ParallelSimulator shares the cycles among its threads.
+ */
+public enum Scheduling {
+        // Cut the field into one vertical stripe per thread and give
+        // each thread the same number of cycles.  Threads whose
+        // stripe holds more circles finish last.
+        STRIPES,
+
+        // Cut the cycles into many small batches over the whole
+        // field.  Each thread takes the next batch as soon as it is
+        // done with the previous one, so no thread sits idle while
+        // batches remain.
+        BATCHES
+}
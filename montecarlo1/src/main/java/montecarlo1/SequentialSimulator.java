@@ -0,0 +1,125 @@
+package montecarlo1;
+
+import java.lang.Math;
+
+public class SequentialSimulator implements Simulator {
+        // Number of cycles between two checks of the precision of
+        // the estimate.
+        private static final long CHECK_INTERVAL = 1 << 16;
+
+        private Experiment exp;
+
+        // Precision after which we stop, or null.
+        private final Precision precision;
+
+        // Half-width of the standard normal interval at the
+        // confidence level of the simulation.
+        private final double z;
+
+        // Set once all the cycles are run or the target precision is
+        // reached.
+        private boolean done;
+
+        private final RunControl control = new RunControl();
+
+        public SequentialSimulator(Circle[] circles,
+                                   long numCycles,
+                                   float size,
+                                   SimulationOptions options)
+        {
+                this.exp = new Experiment(
+                        circles, numCycles, 0, size, size, options);
+                this.precision = options.precision();
+                this.z = Statistics.zScore(options.confidence());
+        }
+
+        public SequentialSimulator(Circle[] circles, long numCycles, float size)
+        {
+                this(circles, numCycles, size, new SimulationOptions());
+        }
+
+        public SequentialSimulator(int numCircles,
+                                   long numCycles,
+                                   float size,
+                                   SimulationOptions options)
+        {
+                this(Experiment.randCircles(
+                             numCircles, size, size, options.effectiveSeed()),
+                     numCycles,
+                     size,
+                     options);
+        }
+
+        public SequentialSimulator(int numCircles, long numCycles, float size)
+        {
+                this(numCircles, numCycles, size, new SimulationOptions());
+        }
+
+        public void run()
+        {
+                if (precision == null) {
+                        exp.run(exp.numCycles(), control);
+                        done = exp.currentCycle() >= exp.numCycles();
+                        return;
+                }
+
+                while (runBatch())
+                        ;
+        }
+
+        @Override
+        public boolean runBatch()
+        {
+                if (done || !control.proceed())
+                        return false;
+
+                exp.run(CHECK_INTERVAL, control);
+                if (control.isCancelled())
+                        return false;
+                done = exp.currentCycle() >= exp.numCycles() ||
+                        (precision != null &&
+                         precision.reached(currentEstim(),
+                                           currentHalfWidth(),
+                                           currentCycle()));
+                return !done;
+        }
+
+        @Override
+        public int parallelism() { return 1; }
+
+        @Override
+        public RunControl control() { return control; }
+
+        public double currentEstim() { return exp.currentEstim(); }
+
+        public double currentHalfWidth()
+        {
+                return z * Math.sqrt(exp.variance());
+        }
+
+        @Override
+        public SampleCursor iterator() { return exp.iterator(); }
+
+        @Override
+        public void histogram(HitHistogram into)
+        {
+                into.clear();
+                if (exp.histogram() != null)
+                        into.addAll(exp.histogram());
+        }
+
+        public float size() { return exp.width(); }
+        public long numCycles() { return exp.numCycles(); }
+        public long currentCycle() { return exp.currentCycle(); }
+        public Circle[] circles() { return exp.circles(); }
+
+        public static void main(String[] args)
+        {
+                Circle[] circles = { new Circle(1, 1, 1) };
+
+                SequentialSimulator s = new SequentialSimulator(
+                        circles, 2000000, 2);
+                s.run();
+                System.out.println("Pi area: " + s.currentEstim());
+        }
+}
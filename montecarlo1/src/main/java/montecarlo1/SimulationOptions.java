@@ -0,0 +1,215 @@
+package montecarlo1;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * The settings of a simulation besides its circles, number of cycles
+ * and field size.
+ *
+ * Every setter returns the options themselves, so they can be
+ * chained:
+ *
+ *      new SimulationOptions()
+ *              .retention(SampleRetention.NONE)
+ *              .threads(4)
+ */
+public class SimulationOptions {
+        // Which of the random points the simulation keeps.
+        private SampleRetention retention = SampleRetention.ALL;
+
+        // Directory of the files the points are mapped from when the
+        // retention is SampleRetention.OFF_HEAP, or null to keep them
+        // in direct memory.
+        private Path sampleDirectory = null;
+
+        // How a parallel simulation shares the cycles among its
+        // threads.
+        private Scheduling scheduling = Scheduling.BATCHES;
+
+        // Number of threads of a parallel simulation.
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        // How the random points are tested against the circles.
+        private Containment containment = Containment.GRID;
+
+        // The kind of sequence the random points come from.
+        private Sampling sampling = Sampling.RANDOM;
+
+        // Should the estimate be corrected with a control variate,
+        // see Estimator?
+        private boolean controlVariate = false;
+
+        // Should the points come in antithetic pairs, see
+        // AntitheticSource?
+        private boolean antithetic = false;
+
+        // Number of cells the field is split into to find the parts
+        // of it that are entirely inside or outside the circles, or
+        // 0 to draw the random points in the whole field.
+        private int strata = 0;
+
+        // Resolution of the histograms the experiments count their
+        // points in for display, or 0 to not count them.
+        private int histogram = 0;
+
+        // Seed of the random values of the simulation, or null to
+        // pick a different one every time.
+        private Long seed = null;
+
+        // Precision after which the simulation stops, or null to
+        // always run all the cycles.
+        private Precision precision = null;
+
+        // Confidence level of the intervals reported by the
+        // simulation when it has no target precision.
+        private double confidence = 0.95;
+
+        // Return new options with the same settings.
+        public SimulationOptions copy()
+        {
+                SimulationOptions o = new SimulationOptions();
+
+                o.retention = retention;
+                o.sampleDirectory = sampleDirectory;
+                o.scheduling = scheduling;
+                o.threads = threads;
+                o.containment = containment;
+                o.sampling = sampling;
+                o.controlVariate = controlVariate;
+                o.antithetic = antithetic;
+                o.strata = strata;
+                o.histogram = histogram;
+                o.seed = seed;
+                o.precision = precision;
+                o.confidence = confidence;
+                return o;
+        }
+
+        public SimulationOptions retention(SampleRetention retention)
+        {
+                this.retention = retention;
+                return this;
+        }
+
+        public SimulationOptions sampleDirectory(Path directory)
+        {
+                this.sampleDirectory = directory;
+                return this;
+        }
+
+        public SimulationOptions scheduling(Scheduling scheduling)
+        {
+                this.scheduling = scheduling;
+                return this;
+        }
+
+        public SimulationOptions threads(int threads)
+        {
+                if (threads < 1)
+                        throw new IllegalArgumentException(
+                                "Invalid number of threads: " + threads);
+                this.threads = threads;
+                return this;
+        }
+
+        public SimulationOptions containment(Containment containment)
+        {
+                this.containment = containment;
+                return this;
+        }
+
+        public SimulationOptions sampling(Sampling sampling)
+        {
+                this.sampling = sampling;
+                return this;
+        }
+
+        public SimulationOptions controlVariate(boolean controlVariate)
+        {
+                this.controlVariate = controlVariate;
+                return this;
+        }
+
+        public SimulationOptions antithetic(boolean antithetic)
+        {
+                this.antithetic = antithetic;
+                return this;
+        }
+
+        public SimulationOptions strata(int strata)
+        {
+                if (strata < 0)
+                        throw new IllegalArgumentException(
+                                "Invalid number of strata: " + strata);
+                this.strata = strata;
+                return this;
+        }
+
+        public SimulationOptions histogram(int pixels)
+        {
+                if (pixels < 0)
+                        throw new IllegalArgumentException(
+                                "Invalid histogram resolution: " + pixels);
+                this.histogram = pixels;
+                return this;
+        }
+
+        public SimulationOptions seed(long seed)
+        {
+                this.seed = seed;
+                return this;
+        }
+
+        public SimulationOptions precision(Precision precision)
+        {
+                this.precision = precision;
+                return this;
+        }
+
+        public SimulationOptions confidence(double confidence)
+        {
+                if (!(confidence > 0 && confidence < 1))
+                        throw new IllegalArgumentException(
+                                "Invalid confidence level: " + confidence);
+                this.confidence = confidence;
+                return this;
+        }
+
+        // Return the confidence level of the intervals reported by
+        // the simulation.
+        public double confidence()
+        {
+                return precision != null ? precision.confidence() : confidence;
+        }
+
+        // Return a new source of the kind of sequence of the
+        // simulation, in antithetic pairs if asked for.
+        public SampleSource newSource(long seed)
+        {
+                SampleSource source = sampling.newSource(seed);
+
+                return antithetic ? new AntitheticSource(source) : source;
+        }
+
+        // Return the seed of the simulation, or a new random one if
+        // none was set.
+        public long effectiveSeed()
+        {
+                return seed != null ?
+                        seed : ThreadLocalRandom.current().nextLong();
+        }
+
+        public SampleRetention retention() { return retention; }
+        public Path sampleDirectory() { return sampleDirectory; }
+        public Scheduling scheduling() { return scheduling; }
+        public int threads() { return threads; }
+        public Containment containment() { return containment; }
+        public Sampling sampling() { return sampling; }
+        public boolean controlVariate() { return controlVariate; }
+        public boolean antithetic() { return antithetic; }
+        public int strata() { return strata; }
+        public int histogram() { return histogram; }
+        public Long seed() { return seed; }
+        public Precision precision() { return precision; }
+}
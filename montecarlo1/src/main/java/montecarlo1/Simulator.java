@@ -0,0 +1,55 @@
+package montecarlo1;
+
+// Represents a simulator that computes the area delimited by a set of
+// circles.  In order to do this, we generate random points inside a
+// square field of a given size.  We then count the number of those
+// that falls within the circle.
+public interface Simulator {
+        // Return the size of the square field where we generate 
+        float size();
+
+        // Run the simulation, until all its cycles are done or its
+        // target precision is reached.
+        void run();
+
+        // Run the next batch of cycles of the simulation in the
+        // calling thread, and return false once there is nothing
+        // left to run.  Calling it until it returns false is the same
+        // as calling run(), but lets a scheduler interleave the
+        // batches of several simulations.  Up to parallelism()
+        // threads may call it at the same time.
+        boolean runBatch();
+
+        // Return the number of threads that can run batches of the
+        // simulation at the same time.
+        int parallelism();
+
+        // Return what pauses, resumes and cancels the simulation.
+        // Both run() and runBatch() return soon after it is
+        // cancelled, and calling them again after resuming carries
+        // on from the cycles already run.
+        RunControl control();
+
+        // Return a cursor over the points that was generated randomly
+        // and kept by the simulation.  Depending on its
+        // SampleRetention, this is every point, a random subset of
+        // them or nothing at all.
+        SampleCursor iterator();
+
+        // Set "into" to the sum of the histograms the simulation
+        // counts its points in.  It is left empty if the simulation
+        // doesn't count them, see SimulationOptions.histogram().
+        void histogram(HitHistogram into);
+
+        double currentEstim();
+
+        // Return the half-width of the confidence interval of
+        // currentEstim(), at the confidence level of the simulation.
+        double currentHalfWidth();
+
+        long numCycles();
+
+        long currentCycle();
+
+        Circle[] circles();        
+}
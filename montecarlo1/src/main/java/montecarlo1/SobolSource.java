@@ -0,0 +1,94 @@
+package montecarlo1;
+
+import java.util.SplittableRandom;
+
+/*
+ * The two dimensional Sobol sequence, scrambled with a random digital
+ * shift: each coordinate is XORed with a random 32 bits mask.
+ *
+ * The points are generated in Gray code order, so going from one to
+ * the next costs a single XOR per coordinate.  The sequence has 2^32
+ * points, after which it starts over.
+ */
+public class SobolSource implements SampleSource {
+        private static final int BITS = 32;
+
+        // Direction numbers of each dimension, as 32 bits binary
+        // fractions.  The first dimension is the van der Corput
+        // sequence, the second one comes from the primitive
+        // polynomial x + 1.
+        private static final int DIR_U[] = new int[BITS];
+        private static final int DIR_V[] = new int[BITS];
+
+        static {
+                for (int k = 0; k < BITS; k++) {
+                        DIR_U[k] = 1 << (BITS - 1 - k);
+                        DIR_V[k] = k == 0 ?
+                                1 << (BITS - 1) :
+                                DIR_V[k - 1] ^ (DIR_V[k - 1] >>> 1);
+                }
+        }
+
+        // The digital shift of each coordinate.
+        private final int shiftU;
+        private final int shiftV;
+
+        // Index of the next point, modulo 2^32.
+        private int index;
+
+        // The current point, before the digital shift.
+        private int u;
+        private int v;
+
+        public SobolSource(long scramble)
+        {
+                SplittableRandom rnd = new SplittableRandom(scramble);
+
+                this.shiftU = rnd.nextInt();
+                this.shiftV = rnd.nextInt();
+                seek(0);
+        }
+
+        // Return the 32 bits binary fraction x as a float in [0, 1).
+        private static float toFloat(int x)
+        {
+                return (x >>> 8) * 0x1.0p-24f;
+        }
+
+        @Override
+        public void next(float u[], float v[], int n)
+        {
+                for (int i = 0; i < n; i++) {
+                        u[i] = toFloat(this.u ^ shiftU);
+                        v[i] = toFloat(this.v ^ shiftV);
+
+                        // The Gray code of index + 1 differs from the
+                        // one of index by the bit at the position of
+                        // the lowest zero bit of index.
+                        int c = Integer.numberOfTrailingZeros(~index);
+                        index++;
+                        if (c < BITS) {
+                                this.u ^= DIR_U[c];
+                                this.v ^= DIR_V[c];
+                        } else {
+                                this.u = 0;
+                                this.v = 0;
+                        }
+                }
+        }
+
+        @Override
+        public void seek(long index)
+        {
+                this.index = (int)index;
+                this.u = 0;
+                this.v = 0;
+
+                int gray = this.index ^ (this.index >>> 1);
+                for (int k = 0; k < BITS; k++)
+                        if ((gray & (1 << k)) != 0) {
+                                this.u ^= DIR_U[k];
+                                this.v ^= DIR_V[k];
+                        }
+        }
+}
@@ -0,0 +1,76 @@
+package montecarlo1;
+
+/*
+ * Statistical helpers for the estimates of the simulators.
+ */
+public final class Statistics {
+        private Statistics() {}
+
+        // Return the quantile of order p of the standard normal
+        // distribution, i.e. the z such that P(Z <= z) = p.
+        //
+        // We use Acklam's rational approximation, whose relative
+        // error is below 1.15e-9 over the whole range.
+        public static double normalQuantile(double p)
+        {
+                final double a[] = {
+                        -3.969683028665376e+01, 2.209460984245205e+02,
+                        -2.759285104469687e+02, 1.383577518672690e+02,
+                        -3.066479806614716e+01, 2.506628277459239e+00
+                };
+                final double b[] = {
+                        -5.447609879822406e+01, 1.615858368580409e+02,
+                        -1.556989798598866e+02, 6.680131188771972e+01,
+                        -1.328068155288572e+01
+                };
+                final double c[] = {
+                        -7.784894002430293e-03, -3.223964580411365e-01,
+                        -2.400758277161838e+00, -2.549732539343734e+00,
+                        4.374664141464968e+00, 2.938163982698783e+00
+                };
+                final double d[] = {
+                        7.784695709041462e-03, 3.224671290700398e-01,
+                        2.445134137142996e+00, 3.754408661907416e+00
+                };
+                final double low = 0.02425;
+
+                if (p <= 0 || p >= 1)
+                        throw new IllegalArgumentException(
+                                "Probability out of (0, 1): " + p);
+
+                if (p < low) {
+                        double q = Math.sqrt(-2 * Math.log(p));
+                        return (((((c[0]*q + c[1])*q + c[2])*q + c[3])*q + c[4])*q + c[5]) /
+                                ((((d[0]*q + d[1])*q + d[2])*q + d[3])*q + 1);
+                }
+                if (p > 1 - low)
+                        return -normalQuantile(1 - p);
+
+                double q = p - 0.5;
+                double r = q * q;
+                return (((((a[0]*r + a[1])*r + a[2])*r + a[3])*r + a[4])*r + a[5])*q /
+                        (((((b[0]*r + b[1])*r + b[2])*r + b[3])*r + b[4])*r + 1);
+        }
+
+        // Return the z such that [-z, z] holds the given proportion of
+        // the standard normal distribution.
+        public static double zScore(double confidence)
+        {
+                return normalQuantile(0.5 + confidence / 2);
+        }
+
+        // Return the variance of the estimate "area * inside / n" of
+        // the area covered by the circles, where "inside" of the "n"
+        // points drawn uniformly in a field of the given area fall
+        // inside the circles.
+        //
+        // We use the Agresti-Coull correction, i.e. we add two points
+        // inside and two outside.  Otherwise a run whose points all
+        // fell on the same side would look exact.
+        public static double variance(double area, long inside, long n)
+        {
+                double p = (inside + 2.0) / (n + 4.0);
+
+                return area * area * p * (1 - p) / (n + 4.0);
+        }
+}
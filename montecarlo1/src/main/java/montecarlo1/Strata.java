@@ -0,0 +1,209 @@
+package montecarlo1;
+
+/*
+ * A partition of a field into the cells of a uniform grid, each of
+ * them classified against the circles as covered (inside one of the
+ * circles), empty (overlapping none of them) or mixed.
+ *
+ * The area of the covered cells is known exactly, so random points
+ * only need to be drawn in the mixed cells.  The points of the unit
+ * square are mapped to them through a virtual grid of S x R cells,
+ * the first ones standing for the mixed cells, so that every mixed
+ * cell gets the same share of points and a low-discrepancy sequence
+ * keeps its evenness.  The virtual cells left over once every mixed
+ * cell has one are mapped to a filler cell that isn't mixed.  Their
+ * points are as wasted as the ones of an empty cell, so we keep them
+ * to at most a row of the virtual grid.
+ */
+public class Strata {
+        // State of a cell.
+        private static final byte EMPTY = 0;
+        private static final byte MIXED = 1;
+        private static final byte COVERED = 2;
+
+        // Number of columns and rows of the grid.
+        private final int cols;
+        private final int rows;
+
+        // Size of a cell.
+        private final float cellWidth;
+        private final float cellHeight;
+
+        // Number of cells of each kind.
+        private int numEmpty;
+        private int numMixed;
+        private int numCovered;
+
+        // Number of columns and rows of the virtual grid.
+        private final int virtCols;
+        private final int virtRows;
+
+        // Lower left corner of each mixed cell, followed by the one
+        // of the filler cell.
+        private final float cellX[];
+        private final float cellY[];
+
+        // Is the filler cell covered?
+        private final boolean fillerCovered;
+
+        // Split the rectangle of the given lower left corner and
+        // size into about "cells" cells.
+        public Strata(Circle[] circles,
+                      float minX,
+                      float minY,
+                      float width,
+                      float height,
+                      int cells)
+        {
+                if (cells < 1)
+                        throw new IllegalArgumentException(
+                                "Invalid number of strata: " + cells);
+
+                double ratio = height > 0 ? (double)width / height : 1;
+                this.cols = (int)Math.max(1, Math.round(Math.sqrt(cells * ratio)));
+                this.rows = Math.max(1, cells / cols);
+                this.cellWidth = width / cols;
+                this.cellHeight = height / rows;
+
+                byte state[] = classify(circles, minX, minY);
+                int filler = -1;
+                for (int i = 0; i < state.length; i++)
+                        switch (state[i]) {
+                        case EMPTY:
+                                numEmpty++;
+                                if (filler < 0 || state[filler] != EMPTY)
+                                        filler = i;
+                                break;
+                        case MIXED:
+                                numMixed++;
+                                break;
+                        default:
+                                numCovered++;
+                                if (filler < 0)
+                                        filler = i;
+                                break;
+                        }
+
+                // When all the cells are mixed, the grid itself is a
+                // virtual grid without any leftover.
+                if (numMixed == state.length) {
+                        this.virtCols = cols;
+                        this.virtRows = rows;
+                } else {
+                        this.virtCols = Math.max(
+                                1, (int)Math.ceil(Math.sqrt(numMixed)));
+                        this.virtRows = Math.max(
+                                1, (numMixed + virtCols - 1) / virtCols);
+                }
+                this.fillerCovered = filler >= 0 && state[filler] == COVERED;
+
+                this.cellX = new float[numMixed + 1];
+                this.cellY = new float[numMixed + 1];
+                int k = 0;
+                for (int i = 0; i < state.length; i++)
+                        if (state[i] == MIXED) {
+                                cellX[k] = minX + (i % cols) * cellWidth;
+                                cellY[k] = minY + (i / cols) * cellHeight;
+                                k++;
+                        }
+                if (filler >= 0) {
+                        cellX[k] = minX + (filler % cols) * cellWidth;
+                        cellY[k] = minY + (filler / cols) * cellHeight;
+                }
+        }
+
+        // Return the state of each cell, row after row.
+        //
+        // A cell is covered if one of the circles contains its four
+        // corners, which, circles being convex, means the whole cell.
+        // A cell covered by several circles together but by none of
+        // them alone is seen as mixed, which only costs a few more
+        // points.
+        private byte[] classify(Circle[] circles, float minX, float minY)
+        {
+                byte state[] = new byte[cols * rows];
+
+                for (Circle c : circles) {
+                        double x = c.center().x();
+                        double y = c.center().y();
+                        double r = c.radius();
+                        double r2 = r * r;
+                        int col0 = clamp((int)Math.floor((x - r - minX) / cellWidth), cols);
+                        int col1 = clamp((int)Math.floor((x + r - minX) / cellWidth), cols);
+                        int row0 = clamp((int)Math.floor((y - r - minY) / cellHeight), rows);
+                        int row1 = clamp((int)Math.floor((y + r - minY) / cellHeight), rows);
+
+                        for (int i = row0; i <= row1; i++)
+                                for (int j = col0; j <= col1; j++) {
+                                        int cell = i*cols + j;
+                                        if (state[cell] == COVERED)
+                                                continue;
+
+                                        double x0 = minX + (double)j * cellWidth;
+                                        double y0 = minY + (double)i * cellHeight;
+                                        double x1 = x0 + cellWidth;
+                                        double y1 = y0 + cellHeight;
+
+                                        // Farthest and closest points
+                                        // of the cell to the center.
+                                        double fx = Math.max(x - x0, x1 - x);
+                                        double fy = Math.max(y - y0, y1 - y);
+                                        double nx = x - Math.max(x0, Math.min(x, x1));
+                                        double ny = y - Math.max(y0, Math.min(y, y1));
+
+                                        if (fx*fx + fy*fy <= r2)
+                                                state[cell] = COVERED;
+                                        else if (nx*nx + ny*ny <= r2)
+                                                state[cell] = MIXED;
+                                }
+                }
+                return state;
+        }
+
+        private static int clamp(int i, int n)
+        {
+                return Math.max(0, Math.min(i, n - 1));
+        }
+
+        // Map the points (u[i], v[i]) of the unit square, for each i
+        // below n, to uniformly distributed points of the mixed
+        // cells, and the filler cell.
+        public void map(float u[], float v[], int n)
+        {
+                for (int i = 0; i < n; i++) {
+                        float su = u[i] * virtCols;
+                        float sv = v[i] * virtRows;
+                        int col = Math.min((int)su, virtCols - 1);
+                        int row = Math.min((int)sv, virtRows - 1);
+                        int k = Math.min(row*virtCols + col, numMixed);
+
+                        u[i] = cellX[k] + (su - col) * cellWidth;
+                        v[i] = cellY[k] + (sv - row) * cellHeight;
+                }
+        }
+
+        // Return the area known without drawing any point: the one
+        // of the covered cells, minus the one of the virtual cells
+        // mapped to the filler cell if it is covered, since the
+        // points drawn in them all count as inside.
+        public double exactArea()
+        {
+                double cell = (double)cellWidth * cellHeight;
+                double area = numCovered * cell;
+
+                if (fillerCovered)
+                        area -= ((long)virtCols * virtRows - numMixed) * cell;
+                return area;
+        }
+
+        // Return the area of the virtual grid the points are drawn
+        // from.
+        public double sampledArea()
+        {
+                return (double)virtCols * virtRows * cellWidth * cellHeight;
+        }
+
+        public int numEmpty() { return numEmpty; }
+        public int numMixed() { return numMixed; }
+        public int numCovered() { return numCovered; }
+}
@@ -0,0 +1,108 @@
+package montecarlo1;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * A containment kernel that tests as many points at once as the CPU
+ * has float lanes in a vector register.
+ *
+ * The circles are kept in flat arrays of centers and squared radii.
+ * For each vector of points, we go through the circles and
+ * accumulate the lanes that fall inside one of them, stopping as
+ * soon as all the lanes are inside.
+ *
+ * Only Containment.kernel() should build instances of this class, as
+ * it checks first that the jdk.incubator.vector module is there.
+ */
+public class VectorKernel implements ContainmentKernel {
+        private static final VectorSpecies<Float> SPECIES =
+                FloatVector.SPECIES_PREFERRED;
+
+        // Abscissas of the centers of the circles.
+        private final float cx[];
+
+        // Ordinates of the centers of the circles.
+        private final float cy[];
+
+        // Squared radii of the circles.
+        private final float r2[];
+
+        // Keep only the circles that overlap the given rectangle,
+        // prepared by CirclePreprocessor.
+        public VectorKernel(Circle[] circles,
+                            float minX,
+                            float minY,
+                            float width,
+                            float height)
+        {
+                circles = CirclePreprocessor.prepare(circles);
+
+                int n = 0;
+                float x[] = new float[circles.length];
+                float y[] = new float[circles.length];
+                float r[] = new float[circles.length];
+
+                for (Circle c : circles) {
+                        float cx = c.center().x();
+                        float cy = c.center().y();
+                        float cr = c.radius();
+                        if (cx + cr < minX || cx - cr > minX + width ||
+                            cy + cr < minY || cy - cr > minY + height)
+                                continue;
+                        x[n] = cx;
+                        y[n] = cy;
+                        r[n] = cr*cr;
+                        n++;
+                }
+                this.cx = Arrays.copyOf(x, n);
+                this.cy = Arrays.copyOf(y, n);
+                this.r2 = Arrays.copyOf(r, n);
+        }
+
+        @Override
+        public int test(float xs[], float ys[], boolean inside[], int n)
+        {
+                int count = 0;
+                int i = 0;
+
+                for (int upper = SPECIES.loopBound(n);
+                     i < upper;
+                     i += SPECIES.length()) {
+                        FloatVector x = FloatVector.fromArray(SPECIES, xs, i);
+                        FloatVector y = FloatVector.fromArray(SPECIES, ys, i);
+                        VectorMask<Float> in = SPECIES.maskAll(false);
+
+                        for (int k = 0; k < cx.length; k++) {
+                                FloatVector dx = x.sub(cx[k]);
+                                FloatVector dy = y.sub(cy[k]);
+                                in = in.or(dx.mul(dx)
+                                           .add(dy.mul(dy))
+                                           .compare(VectorOperators.LE, r2[k]));
+                                if (in.allTrue())
+                                        break;
+                        }
+                        in.intoArray(inside, i);
+                        count += in.trueCount();
+                }
+
+                // The last points don't fill a whole vector.
+                for (; i < n; i++) {
+                        inside[i] = false;
+                        for (int k = 0; k < cx.length; k++) {
+                                float dx = xs[i] - cx[k];
+                                float dy = ys[i] - cy[k];
+                                if (dx*dx + dy*dy <= r2[k]) {
+                                        inside[i] = true;
+                                        count++;
+                                        break;
+                                }
+                        }
+                }
+                return count;
+        }
+}
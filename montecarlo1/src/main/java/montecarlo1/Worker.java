@@ -0,0 +1,178 @@
+package montecarlo1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Runs batches of a simulation for a DistributedSimulator:
+ *
+ *      java -cp montecarlo1.jar montecarlo1.Worker HOST PORT [THREADS]
+ *
+ * The worker connects to the coordinator, gets the circles and the
+ * seed of the simulation, and then runs the batches it is handed out
+ * on its threads, each with an experiment of its own.  It exits once
+ * the coordinator tells it to stop or is gone.
+ */
+public class Worker {
+        // Longest message of an ERROR, well within what writeUTF()
+        // can write.
+        private static final int MAX_MESSAGE = 1000;
+
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        private final int threads;
+
+        // The experiment of each thread.
+        private ThreadLocal<Experiment> experiment;
+
+        public Worker(Socket socket, int threads) throws IOException
+        {
+                socket.setTcpNoDelay(true);
+                this.in = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream()));
+                this.out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream()));
+                this.threads = threads;
+        }
+
+        // Run the batches of the coordinator until it tells us to
+        // stop.
+        public void run() throws IOException
+        {
+                out.writeByte(DistributedSimulator.HELLO);
+                out.writeInt(threads);
+                out.flush();
+
+                if (in.readByte() != DistributedSimulator.CONFIG)
+                        throw new IOException("Expected CONFIG");
+                readConfig();
+
+                ExecutorService exec = Executors.newFixedThreadPool(
+                        threads, ScenarioScheduler.daemonThreads("worker-"));
+                try {
+                        for (;;) {
+                                byte type = in.readByte();
+                                if (type == DistributedSimulator.STOP)
+                                        break;
+                                if (type != DistributedSimulator.BATCH)
+                                        throw new IOException(
+                                                "Unexpected message: " + type);
+                                long id = in.readLong();
+                                long start = in.readLong();
+                                long length = in.readLong();
+                                exec.submit(() -> runBatch(id, start, length));
+                        }
+                } catch (EOFException e) {
+                        // The coordinator is gone.
+                } finally {
+                        exec.shutdownNow();
+                }
+        }
+
+        // Build the experiments of the threads from the configuration
+        // of the simulation.
+        private void readConfig() throws IOException
+        {
+                float size = in.readFloat();
+                Sampling sampling = Sampling.valueOf(in.readUTF());
+                Containment containment = Containment.valueOf(in.readUTF());
+                int numStrata = in.readInt();
+                long seed = in.readLong();
+                Circle circles[] = new Circle[in.readInt()];
+                for (int i = 0; i < circles.length; i++)
+                        circles[i] = new Circle(
+                                in.readFloat(), in.readFloat(), in.readFloat());
+
+                // Same as the experiments of a ParallelSimulator with
+                // Scheduling.BATCHES.  They run as many batches as
+                // they are handed out, so they have no bound on
+                // their number of cycles.
+                Strata strata = numStrata > 0 ?
+                        new Strata(circles, 0, 0, size, size, numStrata) :
+                        null;
+                ContainmentKernel kernel = containment.kernel(
+                        circles, 0, 0, size, size);
+                experiment = ThreadLocal.withInitial(
+                        () -> new Experiment(
+                                circles, kernel, sampling.newSource(seed),
+                                strata, Long.MAX_VALUE, 0, size, size,
+                                SampleRetention.NONE, null, null, null));
+        }
+
+        // Run a batch and send its result, or why it failed, since
+        // it would fail the same way on any other worker.
+        private void runBatch(long id, long start, long length)
+        {
+                Experiment e = experiment.get();
+                long inside = e.numInside();
+                String failure = null;
+
+                try {
+                        e.seek(start);
+                        e.run(length);
+                        inside = e.numInside() - inside;
+                } catch (RuntimeException | Error ex) {
+                        failure = String.valueOf(ex);
+                }
+                try {
+                        synchronized (out) {
+                                if (failure == null) {
+                                        out.writeByte(DistributedSimulator.RESULT);
+                                        out.writeLong(id);
+                                        out.writeLong(length);
+                                        out.writeLong(inside);
+                                } else {
+                                        out.writeByte(DistributedSimulator.ERROR);
+                                        out.writeLong(id);
+                                        out.writeUTF(failure.length() > MAX_MESSAGE ?
+                                                     failure.substring(0, MAX_MESSAGE) :
+                                                     failure);
+                                }
+                                out.flush();
+                        }
+                } catch (IOException ex) {
+                        // The coordinator is gone.
+                }
+        }
+
+        // Start a worker in a new JVM with the class path of this
+        // one.
+        public static Process launch(String host, int port, int threads)
+                throws IOException
+        {
+                String java = System.getProperty("java.home") +
+                        File.separator + "bin" + File.separator + "java";
+
+                return new ProcessBuilder(
+                        java, "-cp", System.getProperty("java.class.path"),
+                        Worker.class.getName(),
+                        host, Integer.toString(port), Integer.toString(threads))
+                        .inheritIO()
+                        .start();
+        }
+
+        public static void main(String[] args) throws IOException
+        {
+                if (args.length < 2) {
+                        System.err.println(
+                                "Usage: Worker HOST PORT [THREADS]");
+                        System.exit(2);
+                }
+                int threads = args.length > 2 ?
+                        Integer.parseInt(args[2]) :
+                        Runtime.getRuntime().availableProcessors();
+
+                try (Socket s = new Socket(args[0], Integer.parseInt(args[1]))) {
+                        new Worker(s, threads).run();
+                }
+        }
+}
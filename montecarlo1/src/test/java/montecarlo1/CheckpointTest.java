@@ -0,0 +1,128 @@
+package montecarlo1;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Checks that a simulation restored from a checkpoint has the
+ * counters it had when the checkpoint was written, and ends up with
+ * the estimate of a simulation that was never stopped.
+ */
+class CheckpointTest {
+        private static final long CYCLES = 1_000_000;
+
+        @TempDir
+        Path dir;
+
+        private static SimulationOptions options(Scheduling scheduling)
+        {
+                return new SimulationOptions()
+                        .retention(SampleRetention.NONE)
+                        .scheduling(scheduling)
+                        .threads(2)
+                        .seed(42L)
+                        .controlVariate(true)
+                        .antithetic(true);
+        }
+
+        @Test
+        void batchesRoundTrip() throws IOException
+        {
+                roundTrip(Scheduling.BATCHES);
+        }
+
+        @Test
+        void stripesRoundTrip() throws IOException
+        {
+                roundTrip(Scheduling.STRIPES);
+        }
+
+        private void roundTrip(Scheduling scheduling) throws IOException
+        {
+                Circle circles[] = Experiment.randCircles(50, 1, 1, 7);
+                ParallelSimulator sim = new ParallelSimulator(
+                        circles, CYCLES, 1, options(scheduling));
+                Path path = dir.resolve("sim.ckpt");
+
+                try (Checkpoint c = new Checkpoint(sim, path)) {
+                        for (int i = 0; i < 5; i++)
+                                sim.runBatch();
+                }
+                ParallelSimulator restored = Checkpoint.restore(path);
+                assertSameState(scheduling, sim.snapshot(), restored.snapshot());
+                assertEquals(sim.currentCycle(), restored.currentCycle());
+
+                restored.run();
+                ParallelSimulator fresh = new ParallelSimulator(
+                        circles, CYCLES, 1, options(scheduling));
+                fresh.run();
+                assertEquals(CYCLES, restored.currentCycle());
+                assertEquals(fresh.currentEstim(), restored.currentEstim());
+                assertEquals(fresh.currentHalfWidth(), restored.currentHalfWidth());
+        }
+
+        // With Scheduling.BATCHES, a restored simulation counts all
+        // the cycles in its first experiment, so only the totals and
+        // the cycles left to run must match.
+        private static void assertSameState(Scheduling scheduling,
+                                            ParallelSimulator.Snapshot expected,
+                                            ParallelSimulator.Snapshot actual)
+        {
+                assertEquals(expected.progress.length, actual.progress.length);
+                assertArrayEquals(totals(expected), totals(actual));
+                if (scheduling == Scheduling.STRIPES)
+                        for (int i = 0; i < expected.progress.length; i++) {
+                                Progress e = expected.progress[i];
+                                Progress a = actual.progress[i];
+                                assertEquals(e.cycles(), a.cycles());
+                                assertEquals(e.inside(), a.inside());
+                                assertEquals(e.position(), a.position());
+                                assertArrayEquals(sums(e.moments()),
+                                                  sums(a.moments()));
+                        }
+                assertEquals(expected.handedOut, actual.handedOut);
+                assertArrayEquals(ranges(expected), ranges(actual));
+        }
+
+        // Return the cycles, the inside points and the sums of the
+        // moments of all the experiments.
+        private static long[] totals(ParallelSimulator.Snapshot s)
+        {
+                long t[] = new long[2 + 9];
+
+                for (Progress p: s.progress) {
+                        t[0] += p.cycles();
+                        t[1] += p.inside();
+                        long m[] = sums(p.moments());
+                        for (int i = 0; i < m.length; i++)
+                                t[2 + i] += m[i];
+                }
+                return t;
+        }
+
+        // Return the ranges of cycles still to run, in order.
+        private static long[][] ranges(ParallelSimulator.Snapshot s)
+        {
+                long r[][] = s.pending.toArray(new long[0][]);
+
+                Arrays.sort(r, Comparator.comparingLong((long x[]) -> x[0]));
+                return r;
+        }
+
+        private static long[] sums(Moments m)
+        {
+                if (m == null)
+                        m = Moments.NONE;
+                return new long[] {
+                        m.n, m.nn, m.y, m.c, m.ny, m.nc, m.yy, m.cc, m.yc
+                };
+        }
+}
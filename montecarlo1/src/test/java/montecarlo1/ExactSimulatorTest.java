@@ -0,0 +1,84 @@
+package montecarlo1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the exact area of the union against the area of the disks
+ * for circles whose union is known.
+ */
+class ExactSimulatorTest {
+        private static final double EPSILON = 1e-12;
+
+        // Area of a disk of radius r.
+        private static double disk(double r)
+        {
+                return Math.PI * r * r;
+        }
+
+        // Area of the part of a disk of radius r beyond a line at
+        // distance d from its center.
+        private static double segment(double r, double d)
+        {
+                return r * r * Math.acos(d / r) - d * Math.sqrt(r * r - d * d);
+        }
+
+        @Test
+        void interiorCircle()
+        {
+                Circle c[] = { new Circle(0.5f, 0.5f, 0.2f) };
+
+                assertEquals(disk(0.2f), ExactSimulator.area(c, 1), EPSILON);
+        }
+
+        @Test
+        void circleCenteredOnASide()
+        {
+                Circle c[] = { new Circle(1, 0.5f, 0.2f) };
+
+                assertEquals(disk(0.2f) / 2, ExactSimulator.area(c, 1), EPSILON);
+        }
+
+        @Test
+        void circleClippedByASide()
+        {
+                float r = 0.25f;
+                float x = 0.1f;
+                Circle c[] = { new Circle(x, 0.5f, r) };
+
+                assertEquals(disk(r) - segment(r, x),
+                             ExactSimulator.area(c, 1), EPSILON);
+        }
+
+        @Test
+        void circleInACorner()
+        {
+                Circle c[] = { new Circle(0, 0, 0.3f) };
+
+                assertEquals(disk(0.3f) / 4, ExactSimulator.area(c, 1), EPSILON);
+        }
+
+        @Test
+        void duplicateCircles()
+        {
+                Circle a = new Circle(0.3f, 0.3f, 0.1f);
+                Circle b = new Circle(0.7f, 0.6f, 0.2f);
+                Circle c[] = { a, b, a, new Circle(0.3f, 0.3f, 0.1f), b };
+
+                assertEquals(disk(0.1f) + disk(0.2f),
+                             ExactSimulator.area(c, 1), EPSILON);
+        }
+
+        @Test
+        void circleInsideAnother()
+        {
+                Circle c[] = {
+                        new Circle(0.5f, 0.5f, 0.05f),
+                        new Circle(0.5f, 0.5f, 0.3f),
+                        new Circle(0.55f, 0.45f, 0.1f),
+                };
+
+                assertEquals(disk(0.3f), ExactSimulator.area(c, 1), EPSILON);
+        }
+}
@@ -0,0 +1,89 @@
+package montecarlo1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Checks that a simulation carried on from the counts of the cache
+ * ends up with the estimate of a simulation run from the start with
+ * the same seed.
+ */
+class ResultCacheTest {
+        private static final Circle CIRCLES[] = Experiment.randCircles(30, 1, 1, 3);
+
+        @TempDir
+        Path dir;
+
+        private static SimulationOptions options(boolean antithetic)
+        {
+                return new SimulationOptions()
+                        .retention(SampleRetention.NONE)
+                        .threads(2)
+                        .seed(11L)
+                        .controlVariate(true)
+                        .antithetic(antithetic);
+        }
+
+        @Test
+        void topUp()
+        {
+                assertTopUp(new ResultCache(4), false, 100_001, 1);
+        }
+
+        @Test
+        void antitheticTopUp()
+        {
+                assertTopUp(new ResultCache(4), true, 100_000, 1);
+        }
+
+        // Counts that split an antithetic pair don't carry on.
+        @Test
+        void oddAntitheticCountsMiss()
+        {
+                assertTopUp(new ResultCache(4), true, 100_001, 0);
+        }
+
+        @Test
+        void topUpFromDirectory()
+        {
+                ResultCache cache = new ResultCache(4, dir);
+                ParallelSimulator first = cache.simulator(
+                        CIRCLES, 100_000, 1, options(true));
+                first.run();
+                cache.store(first);
+
+                assertTopUp(new ResultCache(4, dir), true, 0, 1);
+        }
+
+        // Run "cached" cycles and store them, unless there are none,
+        // then 300000 cycles through the cache, and check them
+        // against a simulation that doesn't use it.
+        private static void assertTopUp(ResultCache cache,
+                                        boolean antithetic,
+                                        long cached,
+                                        long hits)
+        {
+                if (cached > 0) {
+                        ParallelSimulator first = cache.simulator(
+                                CIRCLES, cached, 1, options(antithetic));
+                        first.run();
+                        cache.store(first);
+                }
+
+                ParallelSimulator sim = cache.simulator(
+                        CIRCLES, 300_000, 1, options(antithetic));
+                sim.run();
+                ParallelSimulator fresh = new ParallelSimulator(
+                        CIRCLES, 300_000, 1, options(antithetic));
+                fresh.run();
+
+                assertEquals(fresh.currentCycle(), sim.currentCycle());
+                assertEquals(fresh.currentEstim(), sim.currentEstim());
+                assertEquals(fresh.currentHalfWidth(), sim.currentHalfWidth());
+                assertEquals(hits, cache.hits());
+        }
+}